@@ -0,0 +1,53 @@
+package jnorm.bench;
+
+import jnorm.core.AggressiveBodyTransformer;
+import jnorm.core.model.NormalizationStatistics;
+import org.openjdk.jmh.annotations.*;
+import soot.Body;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AggressiveBodyTransformer} on a body made of type casts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class AggressiveBodyTransformerBenchmark {
+    @Param({"100", "10000", "100000"})
+    public int units;
+
+    private SyntheticBodies bodies;
+    private AggressiveBodyTransformer transformer;
+    private Body template;
+    private Body body;
+
+    @Setup(Level.Trial)
+    public void loadBody() throws IOException {
+        bodies = SyntheticBodies.loadPatterns();
+        template = SyntheticBodies.replicate(SyntheticBodies.getMethod("release8.Patterns", "typeCasts"), units);
+        transformer = new AggressiveBodyTransformer(new NormalizationStatistics());
+    }
+
+    // The transformer removes the casts, so each invocation gets a fresh copy
+    @Setup(Level.Invocation)
+    public void copyBody() {
+        body = (Body) template.clone();
+        body.getMethod().setActiveBody(body);
+    }
+
+    @Benchmark
+    public Body transform() {
+        transformer.transform(body);
+        return body;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteClasses() throws IOException {
+        bodies.delete();
+    }
+}
@@ -0,0 +1,30 @@
+package jnorm.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so every result comes with the allocation rate and the bytes allocated
+ * per operation. Takes the arguments of the JMH command line, for example a regular expression of the benchmarks.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp()) {
+            commandLineOptions.showHelp();
+            return;
+        }
+
+        Runner runner = new Runner(new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .build());
+        if (commandLineOptions.shouldList()) {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+}
@@ -0,0 +1,57 @@
+package jnorm.bench;
+
+import jnorm.core.LocalNormalizer;
+import org.openjdk.jmh.annotations.*;
+import soot.Body;
+import soot.SootMethod;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LocalNormalizer#normalize} on bodies with many locals, which removes the unused ones and then standardizes
+ * the names and sorts the locals.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class LocalNormalizerBenchmark {
+    @Param({"100", "10000", "100000"})
+    public int locals;
+
+    private SyntheticBodies bodies;
+    private LocalNormalizer localNormalizer;
+    private Body template;
+    private Body body;
+
+    @Setup(Level.Trial)
+    public void loadBody() throws IOException {
+        bodies = SyntheticBodies.loadPatterns();
+        SootMethod method = SyntheticBodies.getMethod("release8.Patterns", "locals");
+        // The locals of the parameters are shared by all copies
+        int localsPerCopy = method.retrieveActiveBody().getLocalCount() - method.getParameterCount() - 1;
+        template = SyntheticBodies.replicateCopies(method, Math.max(1, locals / localsPerCopy));
+        localNormalizer = new LocalNormalizer();
+    }
+
+    // The locals are renamed and sorted, so each invocation gets a fresh copy
+    @Setup(Level.Invocation)
+    public void copyBody() {
+        body = (Body) template.clone();
+        body.getMethod().setActiveBody(body);
+    }
+
+    @Benchmark
+    public Body normalize() {
+        localNormalizer.normalize(body);
+        return body;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteClasses() throws IOException {
+        bodies.delete();
+    }
+}
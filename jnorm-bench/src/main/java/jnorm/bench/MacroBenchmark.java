@@ -0,0 +1,454 @@
+package jnorm.bench;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import jnorm.core.Normalizer;
+import jnorm.core.NormalizerOptions;
+import jnorm.core.model.NormalizationStatistics;
+import jnorm.core.model.PassStatistics;
+import org.apache.commons.cli.*;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Normalizes a bundled corpus end to end, once for every release javac compiles it for, and reports the classes per
+ * second, the peak heap and resident set size and the time of every phase. The results can be checked against a
+ * baseline, a run fails if the throughput drops or the peak heap grows by more than the tolerance. The baseline records
+ * the machine and JDK it was measured on, on another machine or JDK only the amount of classes is checked.
+ * <p>
+ * The corpus is compiled with the javac of the running JDK, so releases newer than the JDK are skipped. Every round
+ * normalizes into a fresh output directory and the median round is reported.
+ */
+public class MacroBenchmark {
+    static final String[] CORPUS_FILES = {
+            "Cache.java", "Events.java", "Inventory.java", "Matrix.java", "Resources.java", "Shapes.java", "TextUtil.java"
+    };
+    static final String BASELINE_HEADER = "release,classes,classesPerSecond,peakHeapBytes";
+    // Lines of the baseline before the header, that describe where it was measured
+    static final String MACHINE_PREFIX = "# machine: ";
+    static final String JDK_PREFIX = "# jdk: ";
+
+    private static final String releasesOpt = "releases";
+    private static final String roundsOpt = "rounds";
+    private static final String warmupOpt = "warmup";
+    private static final String copiesOpt = "copies";
+    private static final String threadsOpt = "threads";
+    private static final String baselineOpt = "baseline";
+    private static final String updateBaselineOpt = "update-baseline";
+    private static final String toleranceOpt = "tolerance";
+
+    private final int rounds;
+    private final int warmup;
+    private final int copies;
+    private final int threads;
+
+    MacroBenchmark(int rounds, int warmup, int copies, int threads) {
+        this.rounds = rounds;
+        this.warmup = warmup;
+        this.copies = copies;
+        this.threads = threads;
+    }
+
+    /**
+     * Result of the median round of a release.
+     */
+    static class Result {
+        final int release;
+        final long classes;
+        final long wallNanos;
+        final long peakHeapBytes;
+        final long peakRssBytes;
+        final List<PassStatistics> phases;
+
+        Result(int release, long classes, long wallNanos, long peakHeapBytes, long peakRssBytes, List<PassStatistics> phases) {
+            this.release = release;
+            this.classes = classes;
+            this.wallNanos = wallNanos;
+            this.peakHeapBytes = peakHeapBytes;
+            this.peakRssBytes = peakRssBytes;
+            this.phases = phases;
+        }
+
+        double getClassesPerSecond() {
+            return classes * 1e9 / wallNanos;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = createOptions();
+        CommandLine cmdLine;
+        try {
+            cmdLine = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println("Parsing failed. Reason: " + e.getMessage());
+            new HelpFormatter().printHelp("MacroBenchmark", options);
+            System.exit(2);
+            return;
+        }
+
+        MacroBenchmark benchmark = new MacroBenchmark(
+                Integer.parseInt(cmdLine.getOptionValue(roundsOpt, "5")),
+                Integer.parseInt(cmdLine.getOptionValue(warmupOpt, "2")),
+                Integer.parseInt(cmdLine.getOptionValue(copiesOpt, "10")),
+                Integer.parseInt(cmdLine.getOptionValue(threadsOpt, "1")));
+
+        List<Result> results = new ArrayList<>();
+        for (String value : cmdLine.getOptionValue(releasesOpt, "8,11,17").split(",")) {
+            int release = Integer.parseInt(value.trim());
+            if (release > getFeatureVersion()) {
+                System.out.println("Skipping release " + release + ", the JDK only compiles up to " + getFeatureVersion());
+                continue;
+            }
+            Result result = benchmark.run(release);
+            System.out.print(report(result));
+            results.add(result);
+        }
+
+        String baselineFile = cmdLine.getOptionValue(baselineOpt);
+        if (baselineFile == null) return;
+        Path baseline = Paths.get(baselineFile);
+        if (cmdLine.hasOption(updateBaselineOpt)) {
+            writeBaseline(baseline, results);
+            System.out.println("Baseline written to " + baseline);
+            return;
+        }
+        double tolerance = Double.parseDouble(cmdLine.getOptionValue(toleranceOpt, "0.15"));
+        List<String> mismatches = compareEnvironment(Files.readAllLines(baseline, StandardCharsets.UTF_8));
+        for (String mismatch : mismatches) {
+            System.out.println("WARNING " + mismatch + ", only the amount of classes is checked");
+        }
+        List<String> regressions = compare(readBaseline(baseline), results, tolerance, mismatches.isEmpty());
+        for (String regression : regressions) {
+            System.out.println("REGRESSION " + regression);
+        }
+        if (!regressions.isEmpty()) System.exit(1);
+        System.out.println("No regressions against " + baseline);
+    }
+
+    private static Options createOptions() {
+        Options options = new Options();
+        options.addOption(Option.builder().longOpt(releasesOpt).hasArg().argName("releases")
+                .desc("Comma separated releases the corpus is compiled for, 8,11,17 by default").build());
+        options.addOption(Option.builder().longOpt(roundsOpt).hasArg().argName("n")
+                .desc("Measured rounds per release, 5 by default").build());
+        options.addOption(Option.builder().longOpt(warmupOpt).hasArg().argName("n")
+                .desc("Rounds per release before the measured rounds, 2 by default").build());
+        options.addOption(Option.builder().longOpt(copiesOpt).hasArg().argName("n")
+                .desc("Copies of the corpus, each in its own package, 10 by default").build());
+        options.addOption(Option.builder().longOpt(threadsOpt).hasArg().argName("threads")
+                .desc("Amount of threads used to transform the classes, 1 by default").build());
+        options.addOption(Option.builder().longOpt(baselineOpt).hasArg().argName("file")
+                .desc("CSV baseline the results are checked against").build());
+        options.addOption(Option.builder().longOpt(updateBaselineOpt)
+                .desc("Write the results to the baseline instead of checking them").build());
+        options.addOption(Option.builder().longOpt(toleranceOpt).hasArg().argName("fraction")
+                .desc("Allowed relative regression against the baseline, 0.15 by default").build());
+        return options;
+    }
+
+    /**
+     * Compiles the corpus for the release and normalizes it in the warmup and measured rounds.
+     */
+    Result run(int release) throws IOException {
+        Path classesDir = Files.createTempDirectory("jnorm-macro");
+        try {
+            SyntheticBodies.compile(loadCorpus(copies), release, classesDir);
+            for (int round = 0; round < warmup; round++) {
+                runRound(release, classesDir);
+            }
+            List<Result> measured = new ArrayList<>();
+            for (int round = 0; round < rounds; round++) {
+                measured.add(runRound(release, classesDir));
+            }
+            measured.sort(Comparator.comparingLong(result -> result.wallNanos));
+            return measured.get(measured.size() / 2);
+        } finally {
+            SyntheticBodies.deleteRecursively(classesDir);
+        }
+    }
+
+    private Result runRound(int release, Path classesDir) throws IOException {
+        Path outputDir = Files.createTempDirectory("jnorm-macro-out");
+        try {
+            NormalizerOptions options = NormalizerOptions.builder()
+                    .normalization(true)
+                    .aggressiveNormalization(true)
+                    .standardization(true)
+                    .prettyPrint(true)
+                    .threads(threads)
+                    .build();
+            Normalizer normalizer = new Normalizer(Collections.singletonList(classesDir.toString()), outputDir.toString(), options);
+            NormalizationStatistics statistics = normalizer.getStatistics();
+            statistics.enablePassTiming();
+
+            System.gc();
+            HeapPeak heapPeak = new HeapPeak();
+            resetPeakRss();
+            long start = System.nanoTime();
+            try {
+                normalizer.normalize();
+            } finally {
+                heapPeak.stop();
+            }
+            long wallNanos = System.nanoTime() - start;
+
+            List<PassStatistics> phases = statistics.getPasses();
+            phases.sort(Comparator.comparingLong(PassStatistics::getWallNanos).reversed());
+            return new Result(release, statistics.amountOfClasses.sum(), wallNanos, heapPeak.getPeak(), getPeakRss(), phases);
+        } finally {
+            SyntheticBodies.deleteRecursively(outputDir);
+        }
+    }
+
+    /**
+     * @return the corpus sources by file name, the copies in the packages corpus.copy0 to corpus.copyN
+     */
+    static Map<String, String> loadCorpus(int copies) throws IOException {
+        Map<String, String> sources = new TreeMap<>();
+        for (String file : CORPUS_FILES) {
+            String source = SyntheticBodies.readResource("corpus/" + file);
+            for (int copy = 0; copy < copies; copy++) {
+                sources.put("copy" + copy + "/" + file, source.replace("package corpus;", "package corpus.copy" + copy + ";"));
+            }
+        }
+        return sources;
+    }
+
+    static String report(Result result) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("release %d: %d classes in %.1f ms, %.1f classes/s, peak heap %s, peak RSS %s%n",
+                result.release, result.classes, result.wallNanos / 1e6, result.getClassesPerSecond(),
+                formatBytes(result.peakHeapBytes), formatBytes(result.peakRssBytes)));
+        for (PassStatistics phase : result.phases) {
+            // Disabled phases of the packs
+            if (phase.getInvocations() == 0) continue;
+            report.append(String.format("  %-40s %10.1f ms %8d x%n", phase.getName(), phase.getWallNanos() / 1e6, phase.getInvocations()));
+        }
+        return report.toString();
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 0) return "n/a";
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * The classes must match the baseline exactly, as a different amount means the corpus changed and the baseline is
+     * outdated.
+     *
+     * @param checkPerformance whether the throughput and peak heap are checked as well, only meaningful on the machine
+     *                         and JDK of the baseline
+     * @return a description of every regression, empty if there is none
+     */
+    static List<String> compare(Map<Integer, double[]> baseline, List<Result> results, double tolerance, boolean checkPerformance) {
+        List<String> regressions = new ArrayList<>();
+        for (Result result : results) {
+            double[] expected = baseline.get(result.release);
+            if (expected == null) {
+                regressions.add("release " + result.release + " is missing from the baseline");
+                continue;
+            }
+            if (result.classes != (long) expected[0]) {
+                regressions.add(String.format("release %d: %d classes instead of %d", result.release, result.classes, (long) expected[0]));
+            }
+            if (!checkPerformance) continue;
+            if (result.getClassesPerSecond() < expected[1] * (1 - tolerance)) {
+                regressions.add(String.format("release %d: %.1f classes/s, baseline %.1f", result.release, result.getClassesPerSecond(), expected[1]));
+            }
+            if (result.peakHeapBytes > expected[2] * (1 + tolerance)) {
+                regressions.add(String.format("release %d: peak heap %s, baseline %s", result.release,
+                        formatBytes(result.peakHeapBytes), formatBytes((long) expected[2])));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * @return classes, classes per second and peak heap bytes by release
+     */
+    static Map<Integer, double[]> readBaseline(Path file) throws IOException {
+        Map<Integer, double[]> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.startsWith("#") || line.equals(BASELINE_HEADER)) continue;
+            String[] columns = line.split(",");
+            baseline.put(Integer.parseInt(columns[0]), new double[]{
+                    Double.parseDouble(columns[1]), Double.parseDouble(columns[2]), Double.parseDouble(columns[3])});
+        }
+        return baseline;
+    }
+
+    static void writeBaseline(Path file, List<Result> results) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(MACHINE_PREFIX + describeMachine());
+        lines.add(JDK_PREFIX + describeJdk());
+        lines.add(BASELINE_HEADER);
+        lines.addAll(results.stream()
+                .map(result -> String.format(Locale.ROOT, "%d,%d,%.1f,%d", result.release, result.classes,
+                        result.getClassesPerSecond(), result.peakHeapBytes))
+                .collect(Collectors.toList()));
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a description of every difference between the machine and JDK of the baseline and the running ones,
+     * empty if there is none
+     */
+    static List<String> compareEnvironment(List<String> baselineLines) {
+        List<String> mismatches = new ArrayList<>();
+        compareEnvironment(baselineLines, MACHINE_PREFIX, "machine", describeMachine(), mismatches);
+        compareEnvironment(baselineLines, JDK_PREFIX, "JDK", describeJdk(), mismatches);
+        return mismatches;
+    }
+
+    private static void compareEnvironment(List<String> baselineLines, String prefix, String name, String current,
+                                           List<String> mismatches) {
+        String recorded = baselineLines.stream().filter(line -> line.startsWith(prefix))
+                .map(line -> line.substring(prefix.length())).findFirst().orElse(null);
+        if (recorded == null) {
+            mismatches.add("the baseline does not record its " + name);
+        } else if (!recorded.equals(current)) {
+            mismatches.add("the baseline was measured on the " + name + " " + recorded + ", this is " + current);
+        }
+    }
+
+    /**
+     * @return the operating system, architecture, processor model and count and the maximum heap, which decide on
+     * the throughput and the heap usage along with the JDK
+     */
+    static String describeMachine() {
+        String processor = System.getProperty("os.arch");
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/cpuinfo"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("model name")) {
+                    processor = line.substring(line.indexOf(':') + 1).trim();
+                    break;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Only the architecture is known where /proc/cpuinfo does not exist
+        }
+        return String.format(Locale.ROOT, "%s %s, %s, %d processors, max heap %d MB", System.getProperty("os.name"),
+                System.getProperty("os.arch"), processor, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().maxMemory() / (1024 * 1024));
+    }
+
+    static String describeJdk() {
+        return System.getProperty("java.vm.vendor") + " " + System.getProperty("java.vm.name") + " "
+                + System.getProperty("java.runtime.version");
+    }
+
+    /**
+     * Tracks the peak of the heap usage summed over all heap pools, from its creation until it is stopped. The heap
+     * only grows between garbage collections, so the usage right before every collection is a local maximum and the
+     * peak is the largest of these and of the usage at the end. The peaks of the single pools are not summed, as
+     * they are reached at different times.
+     */
+    static class HeapPeak implements NotificationListener {
+        private final Set<String> heapPools = new HashSet<>();
+        private final AtomicLong peak = new AtomicLong();
+        // Milliseconds since the start of the JVM, like the times of the collections
+        private final long startTime = ManagementFactory.getRuntimeMXBean().getUptime();
+
+        HeapPeak() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) heapPools.add(pool.getName());
+            }
+            peak.set(getHeapUsage());
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter) {
+                    ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+                }
+            }
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) return;
+            record(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo());
+        }
+
+        void stop() {
+            peak.accumulateAndGet(getHeapUsage(), Math::max);
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                // Notifications are delivered asynchronously, the one of the last collection may not have arrived yet
+                if (collector instanceof com.sun.management.GarbageCollectorMXBean) {
+                    GcInfo lastCollection = ((com.sun.management.GarbageCollectorMXBean) collector).getLastGcInfo();
+                    if (lastCollection != null && lastCollection.getStartTime() >= startTime) record(lastCollection);
+                }
+                if (!(collector instanceof NotificationEmitter)) continue;
+                try {
+                    ((NotificationEmitter) collector).removeNotificationListener(this);
+                } catch (ListenerNotFoundException e) {
+                    // Never added
+                }
+            }
+        }
+
+        private void record(GcInfo collection) {
+            long usage = 0;
+            for (Map.Entry<String, MemoryUsage> pool : collection.getMemoryUsageBeforeGc().entrySet()) {
+                if (heapPools.contains(pool.getKey())) usage += pool.getValue().getUsed();
+            }
+            peak.accumulateAndGet(usage, Math::max);
+        }
+
+        long getPeak() {
+            return peak.get();
+        }
+
+        private static long getHeapUsage() {
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    /**
+     * Resets the high water mark of the resident set size, only supported on Linux.
+     */
+    private static void resetPeakRss() {
+        try {
+            Files.write(Paths.get("/proc/self/clear_refs"), "5".getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            // The peak then covers the whole process
+        }
+    }
+
+    /**
+     * @return the high water mark of the resident set size, -1 where /proc/self/status does not exist
+     */
+    private static long getPeakRss() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim()) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the feature version of the running Java, 8 for Java 8
+     */
+    static int getFeatureVersion() {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.")) version = version.substring(2);
+        return Integer.parseInt(version);
+    }
+}
@@ -0,0 +1,62 @@
+package jnorm.bench;
+
+import jnorm.core.JimplePostProcessor;
+import jnorm.core.PrettyPrinter;
+import jnorm.core.Renamer;
+import org.openjdk.jmh.annotations.*;
+import soot.Printer;
+import soot.Scene;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PrettyPrinter}, {@link Renamer} and both of them through {@link JimplePostProcessor} on the printed Jimple
+ * of a class with a method of the given size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class PostProcessorBenchmark {
+    @Param({"100", "10000", "100000"})
+    public int units;
+
+    private String jimple;
+    private JimplePostProcessor postProcessor;
+
+    @Setup(Level.Trial)
+    public void printClass() throws IOException {
+        SyntheticBodies bodies = SyntheticBodies.loadPatterns();
+        try {
+            SyntheticBodies.replicate(SyntheticBodies.getMethod("release8.Patterns", "stringConcat"), units);
+            StringWriter stringWriter = new StringWriter();
+            PrintWriter writerOut = new PrintWriter(stringWriter);
+            Printer.v().printTo(Scene.v().getSootClass("release8.Patterns"), writerOut);
+            writerOut.flush();
+            jimple = stringWriter.toString();
+        } finally {
+            bodies.delete();
+        }
+        postProcessor = new JimplePostProcessor(true, true);
+    }
+
+    @Benchmark
+    public String prettyPrint() {
+        return new PrettyPrinter(jimple).prettyPrint();
+    }
+
+    @Benchmark
+    public String rename() {
+        return new Renamer(jimple).rename();
+    }
+
+    @Benchmark
+    public String postProcess() {
+        return postProcessor.process(jimple);
+    }
+}
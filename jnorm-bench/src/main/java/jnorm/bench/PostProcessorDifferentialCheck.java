@@ -0,0 +1,178 @@
+package jnorm.bench;
+
+import jnorm.core.JimplePostProcessor;
+import jnorm.core.NormalizerOptions;
+import jnorm.core.PrettyPrinter;
+import jnorm.core.Renamer;
+import org.apache.commons.cli.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Checks that {@link JimplePostProcessor} gives the same output as {@link PrettyPrinter} followed by {@link Renamer},
+ * character for character, with every combination of pretty-printing and renaming. The inputs are the edge cases
+ * below, the printed classes of the corpus of the {@link MacroBenchmark} and random strings of Jimple-like tokens.
+ * Exits with 1 if any output differs.
+ */
+public class PostProcessorDifferentialCheck {
+    private static final Map<String, String> EDGE_CASES = new LinkedHashMap<>();
+
+    static {
+        EDGE_CASES.put("empty", "");
+        EDGE_CASES.put("whitespace only", " \t\r\n ");
+        EDGE_CASES.put("leading and trailing whitespace", "\n  r0 := @this: A;\n\n");
+        EDGE_CASES.put("CRLF and CR line breaks", "{\r\n    r0 := @this: A;\r    return;\r\n}");
+        EDGE_CASES.put("vertical tab and form feed", "a\u000B\fb\n\u000Bc");
+        EDGE_CASES.put("NEL line separator", "r1 = r2;  \u0085  r3 = r4;\u0085\n");
+        EDGE_CASES.put("line separator", "r1 = r2;\u2028\t  $r3 = r4; \u2028");
+        EDGE_CASES.put("paragraph separator", "   label1:\u2029\n \u2029");
+        EDGE_CASES.put("line separator as delimiter", "r1\u2028 r2 \u2029r3 \u2028");
+        EDGE_CASES.put("labels", "goto label12;\n\n     label12:\n    label0:label3: nolabel1;");
+        EDGE_CASES.put("label without digits", "label: labelx; label");
+        EDGE_CASES.put("parameters", "r1 := @parameter0: int;\n i2 := @parameter12: long; @parameter @parameterx");
+        EDGE_CASES.put("stack locals with suffix", "$r1_2 = $i10_3 + $z0_; $r1_ $b2_x");
+        EDGE_CASES.put("stack locals", "$r1.<A: int f> = $i0; $Z1 $1 $r");
+        EDGE_CASES.put("locals with suffix", "r1_2.<A: void m()>(i0_1, z3_4); r5_6[i7_8] = b9_10)");
+        EDGE_CASES.put("locals followed by each delimiter", "r1. r2+ r3) r4; r5] r6[ r7, r8\tr9\nr10");
+        EDGE_CASES.put("locals without delimiter", "r1 r2= r3: r4_5= r6_ r7_8");
+        EDGE_CASES.put("local at the end", "return r1");
+        EDGE_CASES.put("local before trailing whitespace", "return r1 \n");
+        EDGE_CASES.put("local before removed whitespace", "r1 \u2028 r2\t\u0085");
+        EDGE_CASES.put("names ending in digits", "java.lang.Object1; class2 Foo3; fooBar4;");
+        EDGE_CASES.put("upper case locals", "R1; $R1; L1_2;");
+    }
+
+    private static final String[] TOKENS = {
+            "label", "label1", "label23", "@parameter", "@parameter0", "@parameter17",
+            "$r", "$r1", "$i12", "$r1_2", "$z0_", "$", "r", "r1", "i23", "r1_2", "b0_", "_", "1", "a", "Z", "R1", "java.lang.Object",
+            ".", "+", ")", ";", "]", "[", ",", ":", "=", " := ", "<A: void m()>",
+            " ", "  ", "\t", "\n", "\r", "\r\n", "\n\n", "\u000B", "\f", "\u0085", "\u2028", "\u2029"
+    };
+
+    private static final String releasesOpt = "releases";
+    private static final String randomOpt = "random";
+    private static final String seedOpt = "seed";
+
+    public static void main(String[] args) throws IOException {
+        Options options = new Options();
+        options.addOption(Option.builder().longOpt(releasesOpt).hasArg().argName("releases")
+                .desc("Comma separated releases the corpus is compiled for, 8,11,17 by default").build());
+        options.addOption(Option.builder().longOpt(randomOpt).hasArg().argName("n")
+                .desc("Amount of random token strings, 100000 by default").build());
+        options.addOption(Option.builder().longOpt(seedOpt).hasArg().argName("seed")
+                .desc("Seed of the random token strings, 1 by default").build());
+        CommandLine cmdLine;
+        try {
+            cmdLine = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println("Parsing failed. Reason: " + e.getMessage());
+            new HelpFormatter().printHelp("PostProcessorDifferentialCheck", options);
+            System.exit(2);
+            return;
+        }
+        int randomInputs = Integer.parseInt(cmdLine.getOptionValue(randomOpt, "100000"));
+        long seed = Long.parseLong(cmdLine.getOptionValue(seedOpt, "1"));
+
+        int differences = 0;
+        for (Map.Entry<String, String> edgeCase : EDGE_CASES.entrySet()) {
+            differences += check("edge case " + edgeCase.getKey(), edgeCase.getValue());
+        }
+        System.out.println(EDGE_CASES.size() + " edge cases compared");
+
+        for (String value : cmdLine.getOptionValue(releasesOpt, "8,11,17").split(",")) {
+            int release = Integer.parseInt(value.trim());
+            if (release > MacroBenchmark.getFeatureVersion()) {
+                System.out.println("Skipping release " + release + ", the JDK only compiles up to " + MacroBenchmark.getFeatureVersion());
+                continue;
+            }
+            Map<String, String> printedClasses = printCorpus(release);
+            for (Map.Entry<String, String> printedClass : printedClasses.entrySet()) {
+                String jimple = printedClass.getValue();
+                differences += check("release " + release + " " + printedClass.getKey(), jimple);
+                differences += check("release " + release + " " + printedClass.getKey() + " with CRLF",
+                        jimple.replace("\n", "\r\n"));
+            }
+            System.out.println("release " + release + ": " + printedClasses.size() + " printed classes compared");
+        }
+
+        Random random = new Random(seed);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < randomInputs; i++) {
+            input.setLength(0);
+            int tokens = 1 + random.nextInt(30);
+            for (int token = 0; token < tokens; token++) {
+                input.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            differences += check("random string " + i, input.toString());
+        }
+        System.out.println(randomInputs + " random token strings compared");
+
+        if (differences > 0) {
+            System.out.println(differences + " outputs differ");
+            System.exit(1);
+        }
+        System.out.println("The output of JimplePostProcessor equals the output of PrettyPrinter and Renamer");
+    }
+
+    /**
+     * @return the amount of combinations of pretty-printing and renaming whose outputs differ for the input
+     */
+    static int check(String name, String input) {
+        int differences = 0;
+        for (boolean prettyPrint : new boolean[]{false, true}) {
+            for (boolean rename : new boolean[]{false, true}) {
+                String expected = input;
+                if (prettyPrint) expected = new PrettyPrinter(expected).prettyPrint();
+                if (rename) expected = new Renamer(expected).rename();
+                String actual = new JimplePostProcessor(prettyPrint, rename).process(input);
+                if (expected.equals(actual)) continue;
+
+                differences++;
+                int index = 0;
+                while (index < expected.length() && index < actual.length() && expected.charAt(index) == actual.charAt(index)) index++;
+                System.out.println("DIFFERENT " + name + ", prettyPrint " + prettyPrint + ", rename " + rename
+                        + " at " + index + ": input " + escape(input) + ", expected " + escape(expected) + ", actual " + escape(actual));
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * @return the Jimple of the corpus classes before post-processing by their file name, with and without
+     * standardization
+     */
+    private static Map<String, String> printCorpus(int release) throws IOException {
+        Map<String, String> printedClasses = new TreeMap<>();
+        Path classesDir = Files.createTempDirectory("jnorm-postprocessor");
+        try {
+            SyntheticBodies.compile(MacroBenchmark.loadCorpus(1), release, classesDir);
+            NormalizerOptions normalized = NormalizerOptions.builder().normalization(true).build();
+            NormalizerOptions standardized = NormalizerOptions.builder().normalization(true).standardization(true).build();
+            for (Map.Entry<String, byte[]> file : ThreadDeterminismCheck.normalize(classesDir, normalized).entrySet()) {
+                printedClasses.put(file.getKey(), new String(file.getValue(), StandardCharsets.UTF_8));
+            }
+            for (Map.Entry<String, byte[]> file : ThreadDeterminismCheck.normalize(classesDir, standardized).entrySet()) {
+                printedClasses.put(file.getKey() + " standardized", new String(file.getValue(), StandardCharsets.UTF_8));
+            }
+        } finally {
+            SyntheticBodies.deleteRecursively(classesDir);
+        }
+        return printedClasses;
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c >= ' ' && c < 0x7F && c != '"' && c != '\\') {
+                escaped.append(c);
+            } else {
+                escaped.append(String.format("\\u%04x", (int) c));
+            }
+        }
+        return escaped.append('"').toString();
+    }
+}
@@ -0,0 +1,58 @@
+package jnorm.bench;
+
+import jnorm.core.RenameLocalBodyTransformer;
+import org.openjdk.jmh.annotations.*;
+import soot.Body;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RenameLocalBodyTransformer} at several hash windows. The rolling window hash makes the time independent of
+ * the window size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class RenameLocalBodyTransformerBenchmark {
+    @Param({"1", "3", "10", "50"})
+    public int window;
+
+    @Param({"100", "10000", "100000"})
+    public int units;
+
+    private SyntheticBodies bodies;
+    private RenameLocalBodyTransformer transformer;
+    private Body template;
+    private Body body;
+
+    @Setup(Level.Trial)
+    public void loadBody() throws IOException {
+        bodies = SyntheticBodies.loadPatterns();
+        template = SyntheticBodies.replicate(SyntheticBodies.getMethod("release8.Patterns", "stringConcat"), units);
+        // Sets the window, the packs already ran
+        RenameLocalBodyTransformer.addToSootConfig(window);
+        transformer = new RenameLocalBodyTransformer();
+    }
+
+    // The locals are renamed, so each invocation gets a fresh copy
+    @Setup(Level.Invocation)
+    public void copyBody() {
+        body = (Body) template.clone();
+        body.getMethod().setActiveBody(body);
+    }
+
+    @Benchmark
+    public Body rename() {
+        transformer.transform(body);
+        return body;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteClasses() throws IOException {
+        bodies.delete();
+    }
+}
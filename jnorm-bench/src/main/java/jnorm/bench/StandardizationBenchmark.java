@@ -0,0 +1,58 @@
+package jnorm.bench;
+
+import jnorm.core.NormalizerOptions;
+import jnorm.core.SootHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and normalizing a growing amount of enums, with and without standardization (-s). The $values methods of
+ * the enums used to be standardized once per method of their class.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class StandardizationBenchmark {
+    @Param({"10", "100", "1000"})
+    public int classes;
+
+    @Param({"false", "true"})
+    public boolean standardization;
+
+    private SyntheticBodies bodies;
+    private NormalizerOptions options;
+
+    @Setup(Level.Trial)
+    public void compileEnums() throws IOException {
+        Map<String, String> sources = new HashMap<>();
+        for (int i = 0; i < classes; i++) {
+            sources.put("Enum" + i + ".java", "public enum Enum" + i + " {\n"
+                    + "    A, B, C, D;\n"
+                    + "    int twice() { int x = ordinal(); return x * 2; }\n"
+                    + "    int next() { return (ordinal() + 1) % values().length; }\n"
+                    + "}\n");
+        }
+        options = NormalizerOptions.builder()
+                .normalization(true)
+                .standardization(standardization)
+                .build();
+        bodies = SyntheticBodies.load(sources, 11, options);
+    }
+
+    @Benchmark
+    public SootHandler load() {
+        return bodies.load(options);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteClasses() throws IOException {
+        bodies.delete();
+    }
+}
@@ -0,0 +1,76 @@
+package jnorm.bench;
+
+import jnorm.core.CoreBodyNormalizer;
+import jnorm.core.NormalizerOptions;
+import jnorm.core.model.NormalizationStatistics;
+import org.openjdk.jmh.annotations.*;
+import soot.Body;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CoreBodyNormalizer} on methods with long StringBuilder concatenations as javac emits them for Java 8, either
+ * one chain with all appends or separate concatenations of two appends each. The pass used to be quadratic in both.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class StringConcatBenchmark {
+    @Param({"chain", "separate"})
+    public String shape;
+
+    @Param({"500", "5000"})
+    public int appends;
+
+    private SyntheticBodies bodies;
+    private CoreBodyNormalizer normalizer;
+    private Body template;
+    private Body body;
+
+    @Setup(Level.Trial)
+    public void loadBody() throws IOException {
+        StringBuilder source = new StringBuilder("public class Concat {\n    public String concat(String s) {\n");
+        if (shape.equals("chain")) {
+            source.append("        return s");
+            for (int i = 1; i < appends; i++) {
+                source.append(" + s");
+            }
+            source.append(";\n");
+        } else {
+            source.append("        String r = s;\n");
+            for (int i = 0; i < appends / 2; i++) {
+                source.append("        r = r + s;\n");
+            }
+            source.append("        return r;\n");
+        }
+        source.append("    }\n}\n");
+
+        bodies = SyntheticBodies.load(Collections.singletonMap("Concat.java", source.toString()), 8,
+                NormalizerOptions.builder().build());
+        template = SyntheticBodies.getMethod("Concat", "concat").retrieveActiveBody();
+        normalizer = new CoreBodyNormalizer(new NormalizationStatistics());
+    }
+
+    // The passes change the body, so each invocation gets a fresh copy
+    @Setup(Level.Invocation)
+    public void copyBody() {
+        body = (Body) template.clone();
+        body.getMethod().setActiveBody(body);
+    }
+
+    @Benchmark
+    public Body normalize() {
+        normalizer.normalize(body);
+        return body;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteClasses() throws IOException {
+        bodies.delete();
+    }
+}
@@ -0,0 +1,231 @@
+package jnorm.bench;
+
+import jnorm.core.NormalizerOptions;
+import jnorm.core.SootHandler;
+import jnorm.core.model.NormalizationStatistics;
+import soot.*;
+import soot.jimple.*;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bodies of controlled size for the benchmarks, built from code that javac compiled for a given release.
+ * <p>
+ * The sources are compiled on every run, so the benchmarks need a JDK. A method larger than the class file format
+ * allows is built by replicating the body of a compiled method, each copy with its own locals. The parameters of
+ * the method are shared by all copies, and every copy but the last falls through to the next one instead of returning.
+ */
+public class SyntheticBodies {
+    // Benchmarks handle copies of small bodies in batches of at least this many units per invocation, so the
+    // invocations are long enough that the setup of each invocation does not distort their time
+    private static final int BATCH_UNITS = 10000;
+
+    private final Path classesDir;
+
+    private SyntheticBodies(Path classesDir) {
+        this.classesDir = classesDir;
+    }
+
+    /**
+     * Compiles the patterns for Java 8 into package release8 and for Java 11 into package release11, and loads both
+     * into Soot without any normalization.
+     */
+    public static SyntheticBodies loadPatterns() throws IOException {
+        String patterns = readResource("Patterns.java");
+        Path classesDir = Files.createTempDirectory("jnorm-bench");
+        for (int release : new int[]{8, 11}) {
+            String source = patterns.replace("package patterns;", "package release" + release + ";");
+            compile(Collections.singletonMap("Patterns.java", source), release, classesDir);
+        }
+        SyntheticBodies bodies = new SyntheticBodies(classesDir);
+        bodies.load(NormalizerOptions.builder().build());
+        return bodies;
+    }
+
+    /**
+     * Compiles the sources and loads them into Soot with the given options.
+     *
+     * @param sources source code by file name, which may include directories
+     */
+    public static SyntheticBodies load(Map<String, String> sources, int release, NormalizerOptions options) throws IOException {
+        Path classesDir = Files.createTempDirectory("jnorm-bench");
+        compile(sources, release, classesDir);
+        SyntheticBodies bodies = new SyntheticBodies(classesDir);
+        bodies.load(options);
+        return bodies;
+    }
+
+    /**
+     * Loads the compiled classes again, into a reset Soot.
+     */
+    public SootHandler load(NormalizerOptions options) {
+        SootHandler sootHandler = new SootHandler(options, new NormalizationStatistics());
+        sootHandler.loadDir(classesDir.toString());
+        return sootHandler;
+    }
+
+    public Path getClassesDir() {
+        return classesDir;
+    }
+
+    public void delete() throws IOException {
+        deleteRecursively(classesDir);
+    }
+
+    public static SootMethod getMethod(String className, String methodName) {
+        return Scene.v().getSootClass(className).getMethodByName(methodName);
+    }
+
+    /**
+     * Replaces the body of the method with copies of it until it has at least the given amount of units.
+     *
+     * @return the new body, which is also the active body of the method
+     */
+    public static Body replicate(SootMethod method, int units) {
+        Body template = method.retrieveActiveBody();
+        int templateUnits = template.getUnits().size();
+        // Further copies drop the identity statements of the parameters
+        int unitsPerCopy = templateUnits - method.getParameterCount() - (method.isStatic() ? 0 : 1);
+        int copies = 1 + Math.max(0, (units - templateUnits + unitsPerCopy - 1) / unitsPerCopy);
+        return replicateCopies(method, copies);
+    }
+
+    /**
+     * Replaces the body of the method with the given amount of copies of it.
+     *
+     * @return the new body, which is also the active body of the method
+     */
+    public static Body replicateCopies(SootMethod method, int copies) {
+        Body template = method.retrieveActiveBody();
+        Body body = Jimple.v().newBody(method);
+        // Locals the identity statements of the first copy define, in order
+        List<Local> parameterLocals = new ArrayList<>();
+
+        for (int copy = 0; copy < copies; copy++) {
+            Body copyBody = Jimple.v().newBody(method);
+            copyBody.importBodyContentsFrom(template);
+            UnitPatchingChain units = copyBody.getUnits();
+
+            Map<Local, Local> sharedLocals = new HashMap<>();
+            int parameter = 0;
+            for (Unit unit : new ArrayList<>(units)) {
+                if (!(unit instanceof IdentityStmt)) continue;
+                Value rightOp = ((IdentityStmt) unit).getRightOp();
+                if (!(rightOp instanceof ThisRef) && !(rightOp instanceof ParameterRef)) continue;
+                Local local = (Local) ((IdentityStmt) unit).getLeftOp();
+                if (copy == 0) {
+                    parameterLocals.add(local);
+                } else {
+                    sharedLocals.put(local, parameterLocals.get(parameter++));
+                    units.remove(unit);
+                }
+            }
+            for (Unit unit : units) {
+                for (ValueBox box : unit.getUseAndDefBoxes()) {
+                    Local shared = sharedLocals.get(box.getValue());
+                    if (shared != null) box.setValue(shared);
+                }
+            }
+            if (copy < copies - 1) {
+                for (Unit unit : new ArrayList<>(units)) {
+                    if (unit instanceof ReturnStmt || unit instanceof ReturnVoidStmt) {
+                        units.swapWith(unit, Jimple.v().newNopStmt());
+                    }
+                }
+            }
+
+            for (Local local : copyBody.getLocals()) {
+                if (sharedLocals.containsKey(local)) continue;
+                if (copy > 0) local.setName(local.getName() + "_" + copy);
+                body.getLocals().add(local);
+            }
+            body.getUnits().addAll(units);
+            body.getTraps().addAll(copyBody.getTraps());
+        }
+
+        method.setActiveBody(body);
+        return body;
+    }
+
+    /**
+     * @return the amount of copies of a body with the given amount of units a benchmark invocation handles
+     */
+    public static int batchSize(int units) {
+        return Math.max(1, BATCH_UNITS / units);
+    }
+
+    /**
+     * @return the given amount of copies of the body, a benchmark has to make each the active body of its method
+     * before handling it
+     */
+    public static Body[] copy(Body template, int copies) {
+        Body[] bodies = new Body[copies];
+        for (int i = 0; i < copies; i++) {
+            bodies[i] = (Body) template.clone();
+        }
+        return bodies;
+    }
+
+    static void compile(Map<String, String> sources, int release, Path classesDir) throws IOException {
+        Path sourceDir = Files.createTempDirectory("jnorm-bench-src");
+        try {
+            List<String> arguments = new ArrayList<>(Arrays.asList(
+                    "--release", String.valueOf(release), "-nowarn", "-d", classesDir.toString()));
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                Path sourceFile = sourceDir.resolve(source.getKey());
+                Files.createDirectories(sourceFile.getParent());
+                Files.write(sourceFile, source.getValue().getBytes(StandardCharsets.UTF_8));
+                arguments.add(sourceFile.toString());
+            }
+
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler == null) throw new IllegalStateException("The benchmarks need a JDK to compile their inputs");
+            ByteArrayOutputStream errors = new ByteArrayOutputStream();
+            // Long concatenations nest deeply in the syntax tree of javac
+            int[] result = new int[1];
+            Thread thread = new Thread(null, () -> result[0] = compiler.run(null, null, errors,
+                    arguments.toArray(new String[0])), "javac", 512L * 1024 * 1024);
+            thread.start();
+            thread.join();
+            if (result[0] != 0) {
+                throw new IllegalStateException("Compiling the inputs failed: " + new String(errors.toByteArray(), StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            deleteRecursively(sourceDir);
+        }
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            // Children before their parents
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    static String readResource(String name) throws IOException {
+        try (InputStream in = SyntheticBodies.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
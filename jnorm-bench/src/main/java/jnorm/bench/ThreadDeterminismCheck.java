@@ -0,0 +1,126 @@
+package jnorm.bench;
+
+import jnorm.core.Normalizer;
+import jnorm.core.NormalizerOptions;
+import org.apache.commons.cli.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks that normalizing with several threads writes the same files as normalizing with one thread, byte for byte.
+ * Normalizes the corpus of the {@link MacroBenchmark}, whose inner classes access private members of their outer
+ * classes, with the option sets of the command line. Races only show up now and then, so every multi-threaded run is
+ * repeated. Exits with 1 if any output differs.
+ */
+public class ThreadDeterminismCheck {
+    // Same option sets as -n, -o -n -s -a -p -r2, -n -s -r 2 and -n -s -r 2 -a
+    private static final Map<String, NormalizerOptions.Builder> OPTION_SETS = new LinkedHashMap<>();
+
+    static {
+        OPTION_SETS.put("-n", NormalizerOptions.builder().normalization(true));
+        OPTION_SETS.put("-o -n -s -a -p -r2", NormalizerOptions.builder().optimization(true).normalization(true)
+                .standardization(true).aggressiveNormalization(true).prettyPrint(true).simpleRenaming(true));
+        OPTION_SETS.put("-n -s -r 2", NormalizerOptions.builder().normalization(true).standardization(true)
+                .renamingWindow(2));
+        OPTION_SETS.put("-n -s -r 2 -a", NormalizerOptions.builder().normalization(true).standardization(true)
+                .renamingWindow(2).aggressiveNormalization(true));
+    }
+
+    private static final String releasesOpt = "releases";
+    private static final String threadsOpt = "threads";
+    private static final String copiesOpt = "copies";
+    private static final String repeatOpt = "repeat";
+
+    public static void main(String[] args) throws IOException {
+        Options options = new Options();
+        options.addOption(Option.builder().longOpt(releasesOpt).hasArg().argName("releases")
+                .desc("Comma separated releases the corpus is compiled for, 8,11,17 by default").build());
+        options.addOption(Option.builder().longOpt(threadsOpt).hasArg().argName("threads")
+                .desc("Amount of threads of the runs compared with the single-threaded run, 4 by default").build());
+        options.addOption(Option.builder().longOpt(copiesOpt).hasArg().argName("n")
+                .desc("Copies of the corpus, each in its own package, 3 by default").build());
+        options.addOption(Option.builder().longOpt(repeatOpt).hasArg().argName("n")
+                .desc("Multi-threaded runs per release and option set, 3 by default").build());
+        CommandLine cmdLine;
+        try {
+            cmdLine = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println("Parsing failed. Reason: " + e.getMessage());
+            new HelpFormatter().printHelp("ThreadDeterminismCheck", options);
+            System.exit(2);
+            return;
+        }
+        int threads = Integer.parseInt(cmdLine.getOptionValue(threadsOpt, "4"));
+        int copies = Integer.parseInt(cmdLine.getOptionValue(copiesOpt, "3"));
+        int repeat = Integer.parseInt(cmdLine.getOptionValue(repeatOpt, "3"));
+
+        int differences = 0;
+        for (String value : cmdLine.getOptionValue(releasesOpt, "8,11,17").split(",")) {
+            int release = Integer.parseInt(value.trim());
+            if (release > MacroBenchmark.getFeatureVersion()) {
+                System.out.println("Skipping release " + release + ", the JDK only compiles up to " + MacroBenchmark.getFeatureVersion());
+                continue;
+            }
+            Path classesDir = Files.createTempDirectory("jnorm-determinism");
+            try {
+                SyntheticBodies.compile(MacroBenchmark.loadCorpus(copies), release, classesDir);
+                for (Map.Entry<String, NormalizerOptions.Builder> optionSet : OPTION_SETS.entrySet()) {
+                    Map<String, byte[]> expected = normalize(classesDir, optionSet.getValue().threads(1).build());
+                    for (int run = 0; run < repeat; run++) {
+                        Map<String, byte[]> actual = normalize(classesDir, optionSet.getValue().threads(threads).build());
+                        List<String> differentFiles = compare(expected, actual);
+                        for (String file : differentFiles) {
+                            System.out.println("DIFFERENT release " + release + ", " + optionSet.getKey() + ", " + threads + " threads: " + file);
+                        }
+                        differences += differentFiles.size();
+                    }
+                    System.out.println("release " + release + ", " + optionSet.getKey() + ": " + expected.size()
+                            + " files compared with " + repeat + " runs on " + threads + " threads");
+                }
+            } finally {
+                SyntheticBodies.deleteRecursively(classesDir);
+            }
+        }
+        if (differences > 0) System.exit(1);
+        System.out.println("The output with " + threads + " threads equals the output with one thread");
+    }
+
+    /**
+     * @return the contents of the written files by their path relative to the output directory
+     */
+    static Map<String, byte[]> normalize(Path classesDir, NormalizerOptions options) throws IOException {
+        Path outputDir = Files.createTempDirectory("jnorm-determinism-out");
+        try {
+            new Normalizer(Collections.singletonList(classesDir.toString()), outputDir.toString(), options).normalize();
+            Map<String, byte[]> files = new TreeMap<>();
+            List<Path> paths;
+            try (Stream<Path> walk = Files.walk(outputDir)) {
+                paths = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            for (Path path : paths) {
+                files.put(outputDir.relativize(path).toString(), Files.readAllBytes(path));
+            }
+            return files;
+        } finally {
+            SyntheticBodies.deleteRecursively(outputDir);
+        }
+    }
+
+    /**
+     * @return the files that are missing from either output or differ in their contents
+     */
+    static List<String> compare(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        Set<String> files = new TreeSet<>(expected.keySet());
+        files.addAll(actual.keySet());
+        List<String> differentFiles = new ArrayList<>();
+        for (String file : files) {
+            if (!Arrays.equals(expected.get(file), actual.get(file))) differentFiles.add(file);
+        }
+        return differentFiles;
+    }
+}
@@ -0,0 +1,116 @@
+package jnorm.core;
+
+import jnorm.bench.SyntheticBodies;
+import jnorm.core.model.NormalizationStatistics;
+import org.openjdk.jmh.annotations.*;
+import soot.Body;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Trap;
+import soot.jimple.toolkits.scalar.ConstantPropagatorAndFolder;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of each pass of {@link CoreBodyNormalizer} on a body made of the pattern the pass looks for. Only the
+ * benchmarked pass runs, through the single-pass entry point of the normalizer, which is why the benchmark lives in
+ * its package.
+ * <p>
+ * Bodies smaller than a batch are normalized in batches of copies, see {@link SyntheticBodies#batchSize(int)}, so
+ * below 10,000 units the score is the time of 10,000 units instead of one body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class CoreBodyNormalizerBenchmark {
+    // Class and method of the pattern of each pass
+    private static final Map<String, String[]> PATTERNS = new HashMap<>();
+
+    static {
+        PATTERNS.put("arithmeticOperations", new String[]{"release8.Patterns", "arithmetic"});
+        PATTERNS.put("stringConcat", new String[]{"release8.Patterns", "stringConcat"});
+        PATTERNS.put("privateMethodCalls", new String[]{"release11.Patterns$Inner", "peek"});
+        PATTERNS.put("charSequenceToString", new String[]{"release8.Patterns", "charSequenceToString"});
+        PATTERNS.put("bufferMethodCalls", new String[]{"release8.Patterns", "bufferMethodCalls"});
+        PATTERNS.put("nullChecks", new String[]{"release11.Patterns", "nullChecks"});
+        PATTERNS.put("duplicateTypeCast", new String[]{"release8.Patterns", "duplicateTypeCast"});
+        PATTERNS.put("innerClassInits", new String[]{"release8.Patterns", "innerClassInits"});
+        PATTERNS.put("nestBasedPrivateAccesses", new String[]{"release8.Patterns$Inner", "peek"});
+        PATTERNS.put("dynamicStringConcatCasts", new String[]{"release11.Patterns", "stringConcatCasts"});
+        PATTERNS.put("dynamicStringConstantConcat", new String[]{"release11.Patterns", "stringConstantConcat"});
+        PATTERNS.put("redundantTraps", new String[]{"release8.Patterns", "synchronizedBlock"});
+        PATTERNS.put("traps", new String[]{"release8.Patterns", "traps"});
+    }
+
+    // Not enum, javac of the JDK always emits $values, and not innerEnums, which only changes modifiers
+    @Param({"arithmeticOperations", "stringConcat", "privateMethodCalls", "charSequenceToString", "bufferMethodCalls",
+            "nullChecks", "duplicateTypeCast", "innerClassInits", "nestBasedPrivateAccesses",
+            "dynamicStringConcatCasts", "dynamicStringConstantConcat", "redundantTraps", "traps"})
+    public String pass;
+
+    @Param({"100", "10000", "100000"})
+    public int units;
+
+    private SyntheticBodies bodies;
+    private CoreBodyNormalizer normalizer;
+    private Body template;
+    private Body[] batch;
+
+    @Setup(Level.Trial)
+    public void loadBody() throws IOException {
+        bodies = SyntheticBodies.loadPatterns();
+        normalizer = new CoreBodyNormalizer(new NormalizationStatistics());
+        // From the untransformed bodies, as before the packs
+        normalizer.analyzeAccessBridges(Scene.v().getApplicationClasses());
+        String[] pattern = PATTERNS.get(pass);
+        SootMethod method = SyntheticBodies.getMethod(pattern[0], pattern[1]);
+        toCompiledShape(method.retrieveActiveBody());
+        template = SyntheticBodies.replicate(method, units);
+    }
+
+    /**
+     * Turns the pattern into what the pass gets in a normalization, where javac of the JDK emits something else.
+     */
+    private void toCompiledShape(Body body) {
+        switch (pass) {
+            case "dynamicStringConstantConcat":
+                // Constant arguments come from the constant propagation of the optimization
+                ConstantPropagatorAndFolder.v().transform(body);
+                break;
+            case "redundantTraps":
+                // Older javac let the handler of a synchronized block cover only its @caughtexception
+                for (Trap trap : body.getTraps()) {
+                    if (trap.getBeginUnit() == trap.getHandlerUnit()) {
+                        trap.setEndUnit(body.getUnits().getSuccOf(trap.getBeginUnit()));
+                    }
+                }
+                break;
+        }
+    }
+
+    // The passes change the bodies, so each invocation gets fresh copies
+    @Setup(Level.Invocation)
+    public void copyBodies() {
+        batch = SyntheticBodies.copy(template, SyntheticBodies.batchSize(units));
+    }
+
+    @Benchmark
+    public Body[] normalize() {
+        for (Body body : batch) {
+            body.getMethod().setActiveBody(body);
+            normalizer.normalize(body, pass);
+        }
+        return batch;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteClasses() throws IOException {
+        bodies.delete();
+    }
+}
@@ -0,0 +1,101 @@
+package patterns;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Code that produces the bytecode each normalization pass looks for, compiled for several releases by the benchmarks.
+ * Every method is one pattern, the benchmarks replicate its body to the size they need.
+ */
+public class Patterns {
+    private int secret = 3;
+    private short small;
+
+    enum Color { RED, GREEN, BLUE }
+
+    class Inner {
+        int peek() {
+            return secret + helper(2) + secret;
+        }
+    }
+
+    private class Hidden {
+    }
+
+    private int helper(int x) {
+        return x * 2;
+    }
+
+    public void arithmetic(byte[] bytes, int i) {
+        bytes[i] += -1;
+        small -= 3;
+    }
+
+    public String stringConcat(String a, int b, char c) {
+        String s = "pre" + a + b + c + "post";
+        return s + a + 42;
+    }
+
+    public String stringConcatCasts(Object a, Object b) {
+        return (String) a + (Integer) b;
+    }
+
+    public String stringConstantConcat() {
+        String a = "pre";
+        String b = "post";
+        return a + b;
+    }
+
+    public String charSequenceToString(CharSequence c) {
+        return c.toString() + c.toString();
+    }
+
+    public void bufferMethodCalls(ByteBuffer b, CharBuffer cb) {
+        b.flip();
+        b.position(1);
+        Buffer b2 = b.limit(3);
+        b2.clear();
+        cb.mark();
+    }
+
+    public Inner nullChecks(Patterns o, Object p) {
+        Objects.requireNonNull(p);
+        return o.new Inner();
+    }
+
+    public String duplicateTypeCast(Object o) {
+        String s = (String) o;
+        return (String) (Object) s;
+    }
+
+    public Object innerClassInits() {
+        return new Hidden();
+    }
+
+    public Object typeCasts(Object o, Object p) {
+        String s = (String) o;
+        Number n = (Number) p;
+        return s.length() + n.intValue() + ((Comparable) s).compareTo(o);
+    }
+
+    public int locals(int a, int b) {
+        int c = a * b;
+        int d = c - a;
+        long e = (long) d * c;
+        double f = e / 3.0;
+        return (int) f + c + d;
+    }
+
+    public void traps(String path) throws IOException {
+        try (InputStream in = new FileInputStream(path)) {
+            in.read();
+        }
+    }
+
+    public void synchronizedBlock(Object o) {
+        synchronized (o) {
+            o.notify();
+        }
+    }
+}
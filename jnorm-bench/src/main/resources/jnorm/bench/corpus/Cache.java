@@ -0,0 +1,54 @@
+package corpus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+public class Cache<K, V> {
+    private final int capacity;
+    private final Map<K, V> entries;
+    private long hits;
+    private long misses;
+
+    public Cache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > Cache.this.capacity;
+            }
+        };
+    }
+
+    public synchronized V get(K key, Function<? super K, ? extends V> loader) {
+        Objects.requireNonNull(key, "key");
+        V value = entries.get(key);
+        if (value != null) {
+            hits++;
+            return value;
+        }
+        misses++;
+        value = loader.apply(key);
+        entries.put(key, value);
+        return value;
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized String stats() {
+        return "size=" + entries.size() + ", capacity=" + capacity + ", hits=" + hits + ", misses=" + misses
+                + ", hitRate=" + hitRate();
+    }
+}
@@ -0,0 +1,78 @@
+package corpus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class Events {
+    private final List<Listener> listeners = new ArrayList<>();
+    private int delivered;
+    private String lastEvent;
+
+    public interface Listener {
+        void onEvent(String event);
+    }
+
+    private class CountingListener implements Listener {
+        private int count;
+
+        @Override
+        public void onEvent(String event) {
+            count++;
+            delivered++;
+            lastEvent = event;
+        }
+    }
+
+    public class Subscription {
+        private final Listener listener;
+
+        Subscription(Listener listener) {
+            this.listener = listener;
+        }
+
+        public void cancel() {
+            listeners.remove(listener);
+            log("cancelled " + listener);
+        }
+    }
+
+    private void log(String message) {
+        lastEvent = message;
+    }
+
+    public Subscription subscribe(Listener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+        return new Subscription(listener);
+    }
+
+    public Subscription subscribeCounting() {
+        return subscribe(new CountingListener());
+    }
+
+    public Subscription subscribePrinting(StringBuilder out) {
+        return subscribe(event -> out.append(event).append('\n'));
+    }
+
+    public void publish(String event) {
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onEvent(event);
+        }
+    }
+
+    public int getDelivered() {
+        return delivered;
+    }
+
+    public String getLastEvent() {
+        return lastEvent;
+    }
+
+    public static Subscription subscribeTo(Events events, Listener listener) {
+        return events.new Subscription(listener);
+    }
+
+    public Runnable publisher(String event) {
+        return () -> publish(event);
+    }
+}
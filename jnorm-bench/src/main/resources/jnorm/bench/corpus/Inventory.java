@@ -0,0 +1,106 @@
+package corpus;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+public class Inventory {
+    private final Map<String, Item> items = new TreeMap<>();
+    private int revision;
+
+    public static class Item implements Comparable<Item> {
+        private final String name;
+        private final int quantity;
+        private final double price;
+
+        public Item(String name, int quantity, double price) {
+            this.name = Objects.requireNonNull(name);
+            this.quantity = quantity;
+            this.price = price;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public Item withQuantity(int quantity) {
+            return new Item(name, quantity, price);
+        }
+
+        @Override
+        public int compareTo(Item other) {
+            return name.compareTo(other.name);
+        }
+
+        @Override
+        public String toString() {
+            return name + " x" + quantity + " @ " + price;
+        }
+    }
+
+    public void add(String name, int quantity, double price) {
+        items.merge(name, new Item(name, quantity, price),
+                (old, added) -> old.withQuantity(old.getQuantity() + added.getQuantity()));
+        revision++;
+    }
+
+    public boolean remove(String name, int quantity) {
+        Item item = items.get(name);
+        if (item == null || item.getQuantity() < quantity) return false;
+        if (item.getQuantity() == quantity) {
+            items.remove(name);
+        } else {
+            items.put(name, item.withQuantity(item.getQuantity() - quantity));
+        }
+        revision++;
+        return true;
+    }
+
+    public double totalValue() {
+        return items.values().stream().mapToDouble(item -> item.getQuantity() * item.getPrice()).sum();
+    }
+
+    public List<String> lowStock(int threshold) {
+        return items.values().stream()
+                .filter(item -> item.getQuantity() < threshold)
+                .map(Item::getName)
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+    }
+
+    public Map<Boolean, List<Item>> partitionByPrice(double limit) {
+        return items.values().stream().collect(Collectors.partitioningBy(item -> item.getPrice() > limit));
+    }
+
+    public Optional<Item> mostValuable() {
+        return items.values().stream().max(Comparator.comparingDouble(item -> item.getQuantity() * item.getPrice()));
+    }
+
+    public <R> List<R> mapItems(Function<? super Item, ? extends R> mapper) {
+        List<R> result = new ArrayList<>();
+        for (Item item : items.values()) {
+            result.add(mapper.apply(item));
+        }
+        return result;
+    }
+
+    public void forEachMatching(Predicate<Item> filter, Consumer<Item> action) {
+        items.values().stream().filter(filter).forEach(action);
+    }
+
+    public String report() {
+        StringBuilder report = new StringBuilder("Inventory rev ").append(revision).append('\n');
+        for (Item item : items.values()) {
+            report.append(" - ").append(item).append('\n');
+        }
+        return report.append("Total: ").append(totalValue()).toString();
+    }
+}
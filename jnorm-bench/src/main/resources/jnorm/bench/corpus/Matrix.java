@@ -0,0 +1,92 @@
+package corpus;
+
+import java.util.Arrays;
+
+public class Matrix {
+    private final double[][] values;
+
+    public Matrix(int rows, int columns) {
+        values = new double[rows][columns];
+    }
+
+    public Matrix(double[][] values) {
+        this.values = new double[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            this.values[i] = Arrays.copyOf(values[i], values[i].length);
+        }
+    }
+
+    public int rows() {
+        return values.length;
+    }
+
+    public int columns() {
+        return values.length == 0 ? 0 : values[0].length;
+    }
+
+    public double get(int row, int column) {
+        return values[row][column];
+    }
+
+    public void set(int row, int column, double value) {
+        values[row][column] = value;
+    }
+
+    public Matrix multiply(Matrix other) {
+        if (columns() != other.rows()) throw new IllegalArgumentException("Sizes do not match");
+        Matrix result = new Matrix(rows(), other.columns());
+        for (int i = 0; i < rows(); i++) {
+            for (int j = 0; j < other.columns(); j++) {
+                double sum = 0;
+                for (int k = 0; k < columns(); k++) {
+                    sum += values[i][k] * other.values[k][j];
+                }
+                result.values[i][j] = sum;
+            }
+        }
+        return result;
+    }
+
+    public Matrix transpose() {
+        Matrix result = new Matrix(columns(), rows());
+        for (int i = 0; i < rows(); i++) {
+            for (int j = 0; j < columns(); j++) {
+                result.values[j][i] = values[i][j];
+            }
+        }
+        return result;
+    }
+
+    public long checksum() {
+        long checksum = 17;
+        for (double[] row : values) {
+            for (double value : row) {
+                checksum = checksum * 31 + (long) value - 3;
+            }
+        }
+        return checksum;
+    }
+
+    public static Matrix identity(int size) {
+        Matrix identity = new Matrix(size, size);
+        for (int i = 0; i < size; i++) {
+            identity.values[i][i] = 1;
+        }
+        return identity;
+    }
+
+    public static Object[] box(Object value) {
+        Number number = (Number) value;
+        Integer integer = (Integer) number;
+        return new Object[]{number, integer, (Comparable<?>) integer};
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (double[] row : values) {
+            text.append(Arrays.toString(row)).append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package corpus;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Resources {
+    public static class ResourceException extends Exception {
+        public ResourceException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    public static List<String> readLines(File file) throws ResourceException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } catch (IOException e) {
+            throw new ResourceException("Reading " + file + " failed", e);
+        }
+        return lines;
+    }
+
+    public static void copy(InputStream in, OutputStream out) throws IOException {
+        try (InputStream source = in; OutputStream target = out) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                target.write(buffer, 0, read);
+            }
+        }
+    }
+
+    public static int sumSafely(String[] numbers) {
+        int sum = 0;
+        for (String number : numbers) {
+            try {
+                sum += Integer.parseInt(number);
+            } catch (NumberFormatException | NullPointerException e) {
+                sum -= 1;
+            } finally {
+                sum++;
+            }
+        }
+        return sum;
+    }
+
+    public static ByteBuffer encode(String text) {
+        ByteBuffer buffer = ByteBuffer.allocate(text.length() * 4);
+        buffer.put(text.getBytes(StandardCharsets.UTF_8));
+        buffer.flip();
+        return buffer;
+    }
+
+    public static String decode(ByteBuffer buffer) {
+        buffer.mark();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        buffer.reset();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static int countLetters(CharBuffer buffer) {
+        int letters = 0;
+        buffer.rewind();
+        while (buffer.hasRemaining()) {
+            if (Character.isLetter(buffer.get())) letters++;
+        }
+        buffer.position(0);
+        buffer.limit(buffer.capacity());
+        return letters;
+    }
+
+    public static String writeAll(List<String> lines) throws IOException {
+        try (StringWriter writer = new StringWriter(); PrintWriter printer = new PrintWriter(writer)) {
+            for (String line : lines) {
+                printer.println(line);
+            }
+            printer.flush();
+            return writer.toString();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package corpus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Shapes {
+    public interface Shape {
+        double area();
+
+        default String describe() {
+            return getClass().getSimpleName() + " with area " + area();
+        }
+    }
+
+    public enum Kind {
+        CIRCLE {
+            @Override
+            Shape create(double size) {
+                return new Circle(size);
+            }
+        },
+        SQUARE {
+            @Override
+            Shape create(double size) {
+                return new Square(size);
+            }
+        },
+        TRIANGLE {
+            @Override
+            Shape create(double size) {
+                return new Triangle(size, size);
+            }
+        };
+
+        abstract Shape create(double size);
+    }
+
+    public abstract static class Polygon implements Shape {
+        protected final int corners;
+
+        protected Polygon(int corners) {
+            this.corners = corners;
+        }
+
+        public int getCorners() {
+            return corners;
+        }
+    }
+
+    public static class Circle implements Shape {
+        private final double radius;
+
+        public Circle(double radius) {
+            this.radius = radius;
+        }
+
+        @Override
+        public double area() {
+            return Math.PI * radius * radius;
+        }
+    }
+
+    public static class Square extends Polygon {
+        private final double side;
+
+        public Square(double side) {
+            super(4);
+            this.side = side;
+        }
+
+        @Override
+        public double area() {
+            return side * side;
+        }
+    }
+
+    public static class Triangle extends Polygon {
+        private final double base;
+        private final double height;
+
+        public Triangle(double base, double height) {
+            super(3);
+            this.base = base;
+            this.height = height;
+        }
+
+        @Override
+        public double area() {
+            return base * height / 2;
+        }
+    }
+
+    public static int weight(Kind kind) {
+        switch (kind) {
+            case CIRCLE:
+                return 1;
+            case SQUARE:
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    public static List<Shape> createAll(double size) {
+        List<Shape> shapes = new ArrayList<>();
+        for (Kind kind : Kind.values()) {
+            shapes.add(kind.create(size * weight(kind)));
+        }
+        shapes.add(new Shape() {
+            @Override
+            public double area() {
+                return size;
+            }
+        });
+        return shapes;
+    }
+
+    public static double totalArea(List<? extends Shape> shapes) {
+        double total = 0;
+        for (Shape shape : shapes) {
+            total += shape.area();
+        }
+        return total;
+    }
+
+    public static String describeAll(List<? extends Shape> shapes) {
+        String description = "";
+        for (Shape shape : shapes) {
+            description = description + shape.describe() + "; ";
+        }
+        return description;
+    }
+}
@@ -0,0 +1,81 @@
+package corpus;
+
+import java.util.Locale;
+
+public final class TextUtil {
+    private TextUtil() {
+    }
+
+    public static String pad(String text, int width, char fill) {
+        StringBuilder padded = new StringBuilder(text);
+        while (padded.length() < width) {
+            padded.insert(0, fill);
+        }
+        return padded.toString();
+    }
+
+    public static String title(CharSequence text) {
+        String value = text.toString();
+        if (value.isEmpty()) return value;
+        return Character.toUpperCase(value.charAt(0)) + value.substring(1).toLowerCase(Locale.ROOT);
+    }
+
+    public static String format(String name, int count, long total, boolean done, char unit) {
+        return "[" + name + "] " + count + "/" + total + unit + (done ? " done" : " running") + " (" + (count * 100 / Math.max(1, total)) + "%)";
+    }
+
+    public static int countVowels(CharSequence text) {
+        int vowels = 0;
+        for (int i = 0; i < text.length(); i++) {
+            switch (Character.toLowerCase(text.charAt(i))) {
+                case 'a':
+                case 'e':
+                case 'i':
+                case 'o':
+                case 'u':
+                    vowels++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return vowels;
+    }
+
+    public static String reverseWords(String sentence) {
+        String[] words = sentence.trim().split("\\s+");
+        StringBuilder reversed = new StringBuilder();
+        for (int i = words.length - 1; i >= 0; i--) {
+            reversed.append(words[i]);
+            if (i > 0) reversed.append(' ');
+        }
+        return reversed.toString();
+    }
+
+    public static byte checksum(byte[] data) {
+        byte sum = 0;
+        for (byte b : data) {
+            sum = (byte) (sum + b - 1);
+        }
+        return sum;
+    }
+
+    public static String join(String separator, Object... parts) {
+        String joined = "";
+        for (int i = 0; i < parts.length; i++) {
+            joined += (i > 0 ? separator : "") + parts[i];
+        }
+        return joined;
+    }
+
+    public static String caesar(String text, int shift) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            if (c >= 'a' && c <= 'z') {
+                chars[i] = (char) ('a' + (c - 'a' + shift + 26) % 26);
+            }
+        }
+        return new String(chars);
+    }
+}
@@ -15,6 +15,19 @@ public class CliHandler {
     static final String aggressiveOpt = "a";
     static final String classFileOpt = "c";
     static final String standardizationOpt = "s";
+    static final String threadsOpt = "t";
+    static final String writeThreadsOpt = "w";
+    static final String cacheOpt = "k";
+    static final String layoutOpt = "l";
+    static final String maxFilesPerDirOpt = "m";
+    static final String skipUnchangedOpt = "u";
+    static final String ioThreadsOpt = "io-threads";
+    static final String fsyncOpt = "fsync";
+    static final String statsJsonOpt = "stats-json";
+    static final String statsCsvOpt = "stats-csv";
+    static final String statsPerClassOpt = "stats-per-class";
+    static final String profileOpt = "profile";
+    static final String profileTopOpt = "profile-top";
 
     Options options;
 
@@ -24,8 +37,8 @@ public class CliHandler {
         Option filePath =
                 Option.builder(inputDirOpt)
                         .argName(inputDirOpt)
-                        .hasArg()
-                        .desc("Input directory")
+                        .hasArgs()
+                        .desc("Input directories or .jar, .war and .zip archives, the output of several inputs is grouped per input")
                         .required(true)
                         .build();
 
@@ -33,7 +46,7 @@ public class CliHandler {
                 Option.builder(outputDirOpt)
                         .argName(outputDirOpt)
                         .hasArg()
-                        .desc("Output directory")
+                        .desc("Output directory, an output ending with .zip or .jar is written as a single archive")
                         .required(false)
                         .build();
 
@@ -46,6 +59,124 @@ public class CliHandler {
                         .type(Number.class)
                         .build();
 
+        Option threads =
+                Option.builder(threadsOpt)
+                        .longOpt("threads")
+                        .argName("threads")
+                        .hasArg()
+                        .desc("Amount of threads used to transform the classes, 0 uses all available processors")
+                        .required(false)
+                        .type(Number.class)
+                        .build();
+
+        Option writeThreads =
+                Option.builder(writeThreadsOpt)
+                        .longOpt("write-threads")
+                        .argName("threads")
+                        .hasArg()
+                        .desc("Amount of threads used to post-process and write the output files")
+                        .required(false)
+                        .type(Number.class)
+                        .build();
+
+        Option cache =
+                Option.builder(cacheOpt)
+                        .longOpt("cache")
+                        .argName("dir")
+                        .hasArg()
+                        .desc("Cache directory, classes that did not change since a previous run with the same options are restored from it")
+                        .required(false)
+                        .build();
+
+        Option layout =
+                Option.builder(layoutOpt)
+                        .longOpt("layout")
+                        .argName("layout")
+                        .hasArg()
+                        .desc("Placement of the output files, flat (default) or package for a directory per package")
+                        .required(false)
+                        .build();
+
+        Option maxFilesPerDir =
+                Option.builder(maxFilesPerDirOpt)
+                        .longOpt("max-files-per-dir")
+                        .argName("files")
+                        .hasArg()
+                        .desc("Spread the files of larger packages over shard directories with the package layout")
+                        .required(false)
+                        .type(Number.class)
+                        .build();
+
+        Option skipUnchanged =
+                Option.builder(skipUnchangedOpt)
+                        .longOpt("skip-unchanged")
+                        .desc("Leave output files that already have the normalized content untouched and replace changed files atomically")
+                        .required(false)
+                        .build();
+
+        Option ioThreads =
+                Option.builder()
+                        .longOpt(ioThreadsOpt)
+                        .argName("threads")
+                        .hasArg()
+                        .desc("Amount of threads that write the output files while the next classes are processed, virtual threads on Java 21 and later")
+                        .required(false)
+                        .type(Number.class)
+                        .build();
+
+        Option fsync =
+                Option.builder()
+                        .longOpt(fsyncOpt)
+                        .argName("policy")
+                        .hasArg()
+                        .desc("Force the output to the storage device: none (default), file for every file or end for all files at the end")
+                        .required(false)
+                        .build();
+
+        Option statsJson =
+                Option.builder()
+                        .longOpt(statsJsonOpt)
+                        .argName("file")
+                        .hasArg()
+                        .desc("Write the statistics with time, invocations and allocated bytes of every pass as JSON to the file")
+                        .required(false)
+                        .build();
+
+        Option statsCsv =
+                Option.builder()
+                        .longOpt(statsCsvOpt)
+                        .argName("file")
+                        .hasArg()
+                        .desc("Write the counters of the statistics as CSV to the file")
+                        .required(false)
+                        .build();
+
+        Option statsPerClass =
+                Option.builder()
+                        .longOpt(statsPerClassOpt)
+                        .desc("Keep the counters of the statistics per class as well")
+                        .required(false)
+                        .build();
+
+        Option profile =
+                Option.builder()
+                        .longOpt(profileOpt)
+                        .argName("file")
+                        .hasArg()
+                        .desc("Profile the cost of every class and method, print the slowest ones and write all of them as CSV to the file")
+                        .required(false)
+                        .build();
+
+        Option profileTop =
+                Option.builder()
+                        .longOpt(profileTopOpt)
+                        .argName("n")
+                        .hasArg()
+                        .desc("Amount of the slowest classes and methods the profile prints, 10 by default")
+                        .required(false)
+                        .type(Number.class)
+                        .build();
+
         Option optimization = new Option(optimizationOpt, "Apply Soot internal optimizations");
         Option prettyPrint = new Option(prettyPrintOpt, "Apply additional pretty-printing");
         Option normalization = new Option(normalizationOpt, "Apply normalizations");
@@ -64,6 +195,19 @@ public class CliHandler {
         options.addOption(aggressive);
         options.addOption(standardization);
         options.addOption(classFile);
+        options.addOption(threads);
+        options.addOption(writeThreads);
+        options.addOption(cache);
+        options.addOption(layout);
+        options.addOption(maxFilesPerDir);
+        options.addOption(skipUnchanged);
+        options.addOption(ioThreads);
+        options.addOption(fsync);
+        options.addOption(statsJson);
+        options.addOption(statsCsv);
+        options.addOption(statsPerClass);
+        options.addOption(profile);
+        options.addOption(profileTop);
     }
 
     public void showHelpMessage(Options options) {
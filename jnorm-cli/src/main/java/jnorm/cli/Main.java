@@ -1,8 +1,17 @@
 package jnorm.cli;
 
+import jnorm.core.FsyncPolicy;
 import jnorm.core.Normalizer;
+import jnorm.core.NormalizerOptions;
+import jnorm.core.OutputLayout;
+import jnorm.core.model.MethodProfiler;
 import org.apache.commons.cli.*;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
 public class Main {
 
     public static void main(String[] args){
@@ -24,7 +33,45 @@ public class Main {
 
         System.out.println("Running jNorm with the following configuration: " + String.join(" ", args));
 
-        final String inputDir = cmdLine.getOptionValue(CliHandler.inputDirOpt);
+        Normalizer normalizer = createNormalizer(cmdLine);
+        normalizer.normalize();
+        printSummary(cmdLine, normalizer);
+        writeStatistics(cmdLine, normalizer);
+
+//        System.out.println(normalizer.getStatistics());
+    }
+
+    // Only repeated runs into the same output or cache need to know what was actually written
+    static void printSummary(CommandLine cmdLine, Normalizer normalizer) {
+        if (cmdLine.hasOption(CliHandler.cacheOpt)) {
+            System.out.println("Restored " + normalizer.getStatistics().amountOfCachedClasses.sum() + " classes from the cache");
+        }
+        if (cmdLine.hasOption(CliHandler.skipUnchangedOpt) || cmdLine.hasOption(CliHandler.cacheOpt)) {
+            System.out.println("Wrote " + normalizer.getWrittenFiles() + " files, skipped " + normalizer.getSkippedFiles()
+                    + " unchanged files, failed " + normalizer.getFailures().size() + " files");
+        }
+    }
+
+    static void writeStatistics(CommandLine cmdLine, Normalizer normalizer) {
+        String statsJsonFile = cmdLine.getOptionValue(CliHandler.statsJsonOpt);
+        String statsCsvFile = cmdLine.getOptionValue(CliHandler.statsCsvOpt);
+        String profileFile = cmdLine.getOptionValue(CliHandler.profileOpt);
+        try {
+            if (statsJsonFile != null) normalizer.getStatistics().writeJson(Paths.get(statsJsonFile));
+            if (statsCsvFile != null) normalizer.getStatistics().writeCsv(Paths.get(statsCsvFile));
+            if (profileFile != null) {
+                MethodProfiler profiler = normalizer.getStatistics().getProfiler();
+                int topN = cmdLine.getOptionValue(CliHandler.profileTopOpt) != null ? Integer.parseInt(cmdLine.getOptionValue(CliHandler.profileTopOpt)) : 10;
+                System.out.print(profiler.report(topN));
+                profiler.writeCsv(Paths.get(profileFile));
+            }
+        } catch (IOException e) {
+            System.err.println("Error while writing the statistics: " + e.getMessage());
+        }
+    }
+
+    static Normalizer createNormalizer(CommandLine cmdLine) {
+        final List<String> inputs = Arrays.asList(cmdLine.getOptionValues(CliHandler.inputDirOpt));
         final String outputDir = cmdLine.getOptionValue(CliHandler.outputDirOpt) != null ? cmdLine.getOptionValue(CliHandler.outputDirOpt) : "output";
         final boolean applyOptimization = cmdLine.hasOption(CliHandler.optimizationOpt);
         final boolean applyPrettyPrint = cmdLine.hasOption(CliHandler.prettyPrintOpt);
@@ -34,10 +81,59 @@ public class Main {
         final boolean applyAggressiveNormalization = cmdLine.hasOption(CliHandler.aggressiveOpt);
         final boolean applyStandardization = cmdLine.hasOption(CliHandler.standardizationOpt);
         final boolean classFileGeneration = cmdLine.hasOption(CliHandler.classFileOpt);
+        final int numThreads = cmdLine.getOptionValue(CliHandler.threadsOpt) != null ? Integer.parseInt(cmdLine.getOptionValue(CliHandler.threadsOpt)) : 1;
+        final int writeThreads = cmdLine.getOptionValue(CliHandler.writeThreadsOpt) != null ? Integer.parseInt(cmdLine.getOptionValue(CliHandler.writeThreadsOpt)) : 1;
+        final String cacheDir = cmdLine.getOptionValue(CliHandler.cacheOpt);
+        final int maxFilesPerDir = cmdLine.getOptionValue(CliHandler.maxFilesPerDirOpt) != null ? Integer.parseInt(cmdLine.getOptionValue(CliHandler.maxFilesPerDirOpt)) : 0;
+        final boolean skipUnchanged = cmdLine.hasOption(CliHandler.skipUnchangedOpt);
+        final int ioThreads = cmdLine.getOptionValue(CliHandler.ioThreadsOpt) != null ? Integer.parseInt(cmdLine.getOptionValue(CliHandler.ioThreadsOpt)) : 0;
+        final FsyncPolicy fsyncPolicy = getFsyncPolicy(cmdLine.getOptionValue(CliHandler.fsyncOpt, "none"));
+        final OutputLayout outputLayout = getOutputLayout(cmdLine.getOptionValue(CliHandler.layoutOpt, "flat"), maxFilesPerDir);
 
-        Normalizer normalizer = new Normalizer(inputDir, outputDir, applyOptimization, applyNormalization, applyAggressiveNormalization, applyStandardization, applyPrettyPrint, applySimpleRenaming, renamingWindow);
-        normalizer.normalize();
+        NormalizerOptions normalizerOptions = NormalizerOptions.builder()
+                .optimization(applyOptimization)
+                .normalization(applyNormalization)
+                .aggressiveNormalization(applyAggressiveNormalization)
+                .standardization(applyStandardization)
+                .prettyPrint(applyPrettyPrint)
+                .simpleRenaming(applySimpleRenaming)
+                .renamingWindow(renamingWindow)
+                .threads(numThreads)
+                .outputParallelism(writeThreads)
+                .cacheDir(cacheDir)
+                .outputLayout(outputLayout)
+                .skipUnchangedWrites(skipUnchanged)
+                .ioThreads(ioThreads)
+                .fsyncPolicy(fsyncPolicy)
+                .build();
+        Normalizer normalizer = new Normalizer(inputs, outputDir, normalizerOptions);
+        if (cmdLine.hasOption(CliHandler.statsJsonOpt)) normalizer.getStatistics().enablePassTiming();
+        if (cmdLine.hasOption(CliHandler.profileOpt)) normalizer.getStatistics().enableProfiling();
+        if (cmdLine.hasOption(CliHandler.statsPerClassOpt)) normalizer.getStatistics().enableClassCounters();
+        return normalizer;
+    }
 
-//        System.out.println(normalizer.getStatistics());
+    private static FsyncPolicy getFsyncPolicy(String fsync) {
+        switch (fsync) {
+            case "none":
+                return FsyncPolicy.NONE;
+            case "file":
+                return FsyncPolicy.PER_FILE;
+            case "end":
+                return FsyncPolicy.AT_END;
+            default:
+                throw new IllegalArgumentException("Unknown fsync policy " + fsync + ", expected none, file or end");
+        }
+    }
+
+    private static OutputLayout getOutputLayout(String layout, int maxFilesPerDir) {
+        switch (layout) {
+            case "flat":
+                return OutputLayout.FLAT;
+            case "package":
+                return OutputLayout.packages(maxFilesPerDir);
+            default:
+                throw new IllegalArgumentException("Unknown output layout " + layout + ", expected flat or package");
+        }
     }
 }
@@ -0,0 +1,218 @@
+package jnorm.cli;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jnorm.core.Normalizer;
+import jnorm.core.model.NormalizationStatistics;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.ParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Long-running normalization server, so jobs do not pay JVM startup and run on warm code.
+ * Listens on the loopback interface only.
+ * <p>
+ * {@code POST /normalize} takes the command line arguments of {@link Main} as body, one argument per line, and
+ * responds with the latency of the job once the output is written. {@code GET /status} reports the jobs handled so far
+ * and {@code GET /statistics} the statistics of all of them merged, as JSON.
+ * <p>
+ * A job reads and writes wherever its arguments point, so every request has to send the token the server prints at
+ * startup in the {@value #TOKEN_HEADER} header. Requests with an Origin header come from a web page in a browser and
+ * are rejected, a page could otherwise send jobs to the loopback interface.
+ * <p>
+ * Soot keeps its state in globals, so jobs run one after another on a single job thread, while status requests are
+ * answered meanwhile. Every job starts from a reset Soot, no classes or options of a previous job are visible to it.
+ */
+public class Server {
+    static final String TOKEN_HEADER = "X-Jnorm-Token";
+
+    private final HttpServer httpServer;
+    private final CliHandler cli = new CliHandler();
+    private final String token;
+    // Requests wait here for their job, so status requests are not stuck behind a running job
+    private final ExecutorService requestExecutor = Executors.newCachedThreadPool();
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor();
+    private int amountOfJobs = 0;
+    private int amountOfFailedJobs = 0;
+    private long totalLatencyMillis = 0;
+    private long maxLatencyMillis = 0;
+    // Statistics of all jobs that finished
+    private final NormalizationStatistics totalStatistics = new NormalizationStatistics();
+
+    public Server(int port) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/normalize", exchange -> handleAuthorized(exchange, this::handleNormalize));
+        httpServer.createContext("/status", exchange -> handleAuthorized(exchange, this::handleStatus));
+        httpServer.createContext("/statistics", exchange -> handleAuthorized(exchange, this::handleStatistics));
+        httpServer.setExecutor(requestExecutor);
+
+        byte[] tokenBytes = new byte[32];
+        new SecureRandom().nextBytes(tokenBytes);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : tokenBytes) {
+            hex.append(String.format("%02x", b));
+        }
+        token = hex.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8717;
+        Server server = new Server(port);
+        server.start();
+        System.out.println("jNorm server listening on port " + server.getPort());
+        System.out.println("Send this token in the " + TOKEN_HEADER + " header of every request: " + server.getToken());
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+        jobExecutor.shutdownNow();
+        requestExecutor.shutdownNow();
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private void handleAuthorized(HttpExchange exchange, Handler handler) throws IOException {
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            respond(exchange, 403, "Requests from web pages are not accepted\n");
+            return;
+        }
+        String requestToken = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+        // Compared in constant time, so the response time does not reveal the token
+        if (requestToken == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                requestToken.getBytes(StandardCharsets.UTF_8))) {
+            respond(exchange, 401, "Send the token the server printed at startup in the " + TOKEN_HEADER + " header\n");
+            return;
+        }
+        handler.handle(exchange);
+    }
+
+    private void handleNormalize(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, "Use POST with the command line arguments as body, one per line\n");
+            return;
+        }
+
+        List<String> arguments = parseArguments(readBody(exchange.getRequestBody()));
+        CommandLine cmdLine;
+        try {
+            cmdLine = new DefaultParser().parse(cli.getOptions(), arguments.toArray(new String[0]));
+        } catch (ParseException e) {
+            respond(exchange, 400, "Parsing failed. Reason: " + e.getMessage() + "\n");
+            return;
+        }
+
+        Future<String> job = jobExecutor.submit(() -> runJob(cmdLine, arguments));
+        try {
+            respond(exchange, 200, job.get());
+        } catch (ExecutionException e) {
+            respond(exchange, 500, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "The server is stopping\n");
+        }
+    }
+
+    // Runs on the job thread
+    private String runJob(CommandLine cmdLine, List<String> arguments) {
+        long start = System.nanoTime();
+        try {
+            Normalizer normalizer = Main.createNormalizer(cmdLine);
+            normalizer.normalize();
+            Main.printSummary(cmdLine, normalizer);
+            Main.writeStatistics(cmdLine, normalizer);
+            totalStatistics.merge(normalizer.getStatistics());
+            long latencyMillis = finishJob(start, true);
+            System.out.println("Job finished in " + latencyMillis + " ms: " + arguments);
+            return "OK " + normalizer.getStatistics().amountOfClasses.sum() + " classes in " + latencyMillis + " ms\n";
+        } catch (RuntimeException e) {
+            long latencyMillis = finishJob(start, false);
+            System.err.println("Job failed after " + latencyMillis + " ms: " + arguments);
+            e.printStackTrace();
+            throw new IllegalStateException("Failed after " + latencyMillis + " ms: " + e + "\n", e);
+        }
+    }
+
+    /**
+     * One argument per line, so paths may contain spaces. Empty lines are ignored.
+     */
+    static List<String> parseArguments(String body) {
+        List<String> arguments = new ArrayList<>();
+        for (String line : body.split("\\r?\\n")) {
+            if (!line.isEmpty()) arguments.add(line);
+        }
+        return arguments;
+    }
+
+    private synchronized String getStatus() {
+        long meanLatencyMillis = amountOfJobs > 0 ? totalLatencyMillis / amountOfJobs : 0;
+        return "jobs=" + amountOfJobs + " failed=" + amountOfFailedJobs
+                + " meanLatencyMs=" + meanLatencyMillis + " maxLatencyMs=" + maxLatencyMillis + "\n";
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, getStatus());
+    }
+
+    private void handleStatistics(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, totalStatistics.toJson());
+    }
+
+    // Status requests read the counters while a job runs
+    private synchronized long finishJob(long start, boolean succeeded) {
+        long latencyMillis = (System.nanoTime() - start) / 1_000_000;
+        amountOfJobs++;
+        if (!succeeded) amountOfFailedJobs++;
+        totalLatencyMillis += latencyMillis;
+        maxLatencyMillis = Math.max(maxLatencyMillis, latencyMillis);
+        return latencyMillis;
+    }
+
+    private static String readBody(InputStream body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] response = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+}
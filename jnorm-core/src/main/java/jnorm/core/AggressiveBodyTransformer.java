@@ -74,7 +74,7 @@ public class AggressiveBodyTransformer extends BodyTransformer {
                 Local newLocal = localAliases.get(currentLocal);
 
                 vb.setValue(newLocal);
-                if (statistics != null) statistics.typecheck += 1;
+                if (statistics != null) statistics.count(statistics.typecheck, body);
             }
         }
         unitsToRemove.forEach(unitChain::remove);
@@ -1,8 +1,15 @@
 package jnorm.core;
 
+import jnorm.core.helpers.BodyFeatures;
+import jnorm.core.helpers.NormalizationEvents;
 import jnorm.core.helpers.SootHelper;
+import jnorm.core.helpers.SootReferenceCache;
+import jnorm.core.helpers.ThreadAllocation;
+import jnorm.core.helpers.UnitDispatcher;
+import jnorm.core.model.AccessBridge;
 import jnorm.core.model.BufferCall;
 import jnorm.core.model.NormalizationStatistics;
+import jnorm.core.model.PassStatistics;
 import jnorm.core.model.StringBuilderConcat;
 import soot.*;
 import soot.jimple.*;
@@ -11,12 +18,128 @@ import soot.jimple.toolkits.scalar.DefaultLocalCreation;
 import soot.util.Chain;
 
 import java.util.*;
+import java.util.regex.Pattern;
 
 public class CoreBodyNormalizer {
+    // Passes that walk the unit chain, in the order they are run
+    private static final int ARITHMETIC_OPERATIONS = 0;
+    private static final int STRING_CONCAT = 1;
+    private static final int PRIVATE_METHOD_CALLS = 2;
+    private static final int CHAR_SEQUENCE_TO_STRING = 3;
+    private static final int BUFFER_METHOD_CALLS = 4;
+    private static final int NULL_CHECKS = 5;
+    private static final int DUPLICATE_TYPE_CAST = 6;
+    private static final int ENUM = 7;
+    private static final int INNER_CLASS_INITS = 8;
+    private static final int NEST_BASED_PRIVATE_ACCESSES = 9;
+    private static final int DYNAMIC_STRING_CONCAT_CASTS = 10;
+    private static final int DYNAMIC_STRING_CONSTANT_CONCAT = 11;
+    // Passes that are only timed, they do not walk the unit chain through the dispatcher
+    private static final int REDUNDANT_TRAPS = 12;
+    private static final int TRAPS = 13;
+    private static final int INNER_ENUMS = 14;
+
+    // Order the passes are run in, the passes that only belong to normalizeStringConcat run last
+    private static final int[] PASS_ORDER = {
+            ARITHMETIC_OPERATIONS, STRING_CONCAT, PRIVATE_METHOD_CALLS, CHAR_SEQUENCE_TO_STRING, BUFFER_METHOD_CALLS,
+            NULL_CHECKS, DUPLICATE_TYPE_CAST, ENUM, REDUNDANT_TRAPS, TRAPS, INNER_CLASS_INITS, NEST_BASED_PRIVATE_ACCESSES,
+            INNER_ENUMS, DYNAMIC_STRING_CONCAT_CASTS, DYNAMIC_STRING_CONSTANT_CONCAT
+    };
+
+    // Names the passes are timed under, indexed by pass
+    private static final String[] PASS_NAMES = {
+            "normalize.arithmeticOperations",
+            "normalize.stringConcat",
+            "normalize.privateMethodCalls",
+            "normalize.charSequenceToString",
+            "normalize.bufferMethodCalls",
+            "normalize.nullChecks",
+            "normalize.duplicateTypeCast",
+            "normalize.enum",
+            "normalize.innerClassInits",
+            "normalize.nestBasedPrivateAccesses",
+            "normalize.dynamicStringConcatCasts",
+            "normalize.dynamicStringConstantConcat",
+            "normalize.redundantTraps",
+            "normalize.traps",
+            "normalize.innerEnums"
+    };
+
+    // Statement shapes each pass is interested in, indexed by pass
+    // Units a pass changes in place never get a shape that a later pass is interested in
+    private static final int[] PASS_SHAPES = {
+            UnitDispatcher.ASSIGN_ADD,
+            UnitDispatcher.INVOKE_SPECIAL | UnitDispatcher.ASSIGN_NEW | UnitDispatcher.ASSIGN_VIRTUAL_INVOKE,
+            UnitDispatcher.ASSIGN_VIRTUAL_INVOKE | UnitDispatcher.INVOKE_VIRTUAL,
+            UnitDispatcher.ASSIGN_INTERFACE_INVOKE | UnitDispatcher.INVOKE_INTERFACE,
+            UnitDispatcher.ASSIGN_VIRTUAL_INVOKE | UnitDispatcher.INVOKE_VIRTUAL,
+            UnitDispatcher.INVOKE_STATIC,
+            UnitDispatcher.ASSIGN_CAST,
+            UnitDispatcher.ASSIGN_NEW_ARRAY,
+            UnitDispatcher.INVOKE_SPECIAL,
+            UnitDispatcher.ASSIGN_STATIC_INVOKE | UnitDispatcher.INVOKE_STATIC,
+            UnitDispatcher.ASSIGN_DYNAMIC_INVOKE,
+            UnitDispatcher.ASSIGN_DYNAMIC_INVOKE
+    };
+
+    // Body features each pass requires one of, indexed by pass, 0 if the statement shapes are enough
+    private static final int[] PASS_FEATURES = {
+            0,
+            BodyFeatures.STRING_BUILDER,
+            0,
+            BodyFeatures.CHAR_SEQUENCE_TO_STRING,
+            BodyFeatures.BUFFER_CALL,
+            BodyFeatures.REQUIRE_NON_NULL,
+            0,
+            BodyFeatures.ENUM_STATIC_INITIALIZER,
+            0,
+            BodyFeatures.ACCESS_BRIDGE_CALL,
+            BodyFeatures.DYNAMIC_INVOKE,
+            BodyFeatures.DYNAMIC_INVOKE
+    };
+
+    // Normalizations applied on each thread, the pass events report the hits of a pass as their difference
+    private static final ThreadLocal<int[]> HITS = ThreadLocal.withInitial(() -> new int[1]);
+
+    private static final Pattern NEST_BASED_ACCESS_PATTERN = Pattern.compile("access\\$\\d+");
+
     private NormalizationStatistics statistics;
+    // Refs synthesized by the passes, shared by all bodies of the run
+    private final SootReferenceCache referenceCache = new SootReferenceCache();
+    // Summaries of the access$ bridge methods of the application classes, built before the packs and only read after
+    private final Map<SootMethod, AccessBridge> accessBridges = new HashMap<>();
+    // Indexed by pass, null if pass timing is not enabled
+    private final PassStatistics[] passTimings;
 
     public CoreBodyNormalizer(NormalizationStatistics statistics) {
         this.statistics = statistics;
+        if (statistics != null && statistics.isPassTimingEnabled()) {
+            this.passTimings = new PassStatistics[PASS_NAMES.length];
+            for (int pass = 0; pass < PASS_NAMES.length; pass++) {
+                passTimings[pass] = statistics.getPass(PASS_NAMES[pass]);
+            }
+        } else {
+            this.passTimings = null;
+        }
+    }
+
+    /**
+     * Summarizes the access$ bridge methods of the classes from their untransformed bodies. Has to run before the
+     * packs, so the passes of the callers never read a bridge body that its own class is transforming, on this or
+     * on another thread.
+     */
+    public void analyzeAccessBridges(Collection<SootClass> classes) {
+        for (SootClass sc : classes) {
+            for (SootMethod sm : sc.getMethods()) {
+                if (!sm.isConcrete()) continue;
+                if (!NEST_BASED_ACCESS_PATTERN.matcher(sm.getName()).matches()) continue;
+                try {
+                    accessBridges.put(sm, analyzeAccessBridge(sm));
+                } catch (RuntimeException e) {
+                    // Bridges without a body are left out, the passes of their callers are aborted as before
+                }
+            }
+        }
     }
 
     public void normalize(Body body) {
@@ -28,23 +151,13 @@ public class CoreBodyNormalizer {
             return;
         }
         try {
-            normalizeArithmeticOperations(body);
-            normalizeStringConcat(body);
-            normalizePrivateMethodCalls(body);
-            normalizeCharSequenceToStringInvoke(body);
-            normalizeBufferMethodCalls(body);
-            normalizeNullChecks(body);
-            normalizeDuplicateTypeCast(body);
-            normalizeEnum(body);
-            removeRedundantTraps(body);
-            normalizeTraps(body);
-            normalizeInnerClassInits(body);
-            normalizeNestBasedPrivateAccesses(body);
-            normalizeInnerEnums(body);
-
-            // belong to normalizeStringConcat
-            normalizeDynamicStringConcatCasts(body);
-            normalizeDynamicStringConstantConcat(body);
+            // Walk the units once, each pass only visits the units with a matching statement shape
+            // and is skipped if the body lacks the features it requires
+            UnitDispatcher dispatcher = new UnitDispatcher(body, PASS_SHAPES, PASS_FEATURES);
+
+            for (int pass : PASS_ORDER) {
+                runPass(pass, body, getPass(pass, body, dispatcher));
+            }
         } catch (Exception e) {
             // e.printStackTrace();
         }
@@ -52,15 +165,94 @@ public class CoreBodyNormalizer {
 
     }
 
+    /**
+     * Runs only the pass timed under the given name, without the "normalize." prefix, for the benchmarks of single
+     * passes. Synthetic methods are skipped like in {@link #normalize(Body)}.
+     */
+    void normalize(Body body, String passName) {
+        int pass = Arrays.asList(PASS_NAMES).indexOf("normalize." + passName);
+        if (pass < 0) throw new IllegalArgumentException("Unknown pass " + passName);
+        if (isSynthetic(body.getMethod())) return;
+        UnitDispatcher dispatcher = new UnitDispatcher(body, PASS_SHAPES, PASS_FEATURES);
+        runPass(pass, body, getPass(pass, body, dispatcher));
+    }
+
+    private Runnable getPass(int pass, Body body, UnitDispatcher dispatcher) {
+        switch (pass) {
+            case ARITHMETIC_OPERATIONS:
+                return () -> normalizeArithmeticOperations(body, dispatcher);
+            case STRING_CONCAT:
+                return () -> normalizeStringConcat(body, dispatcher);
+            case PRIVATE_METHOD_CALLS:
+                return () -> normalizePrivateMethodCalls(body, dispatcher);
+            case CHAR_SEQUENCE_TO_STRING:
+                return () -> normalizeCharSequenceToStringInvoke(body, dispatcher);
+            case BUFFER_METHOD_CALLS:
+                return () -> normalizeBufferMethodCalls(body, dispatcher);
+            case NULL_CHECKS:
+                return () -> normalizeNullChecks(body, dispatcher);
+            case DUPLICATE_TYPE_CAST:
+                return () -> normalizeDuplicateTypeCast(body, dispatcher);
+            case ENUM:
+                return () -> normalizeEnum(body, dispatcher);
+            case REDUNDANT_TRAPS:
+                return () -> removeRedundantTraps(body, dispatcher);
+            case TRAPS:
+                return () -> normalizeTraps(body, dispatcher);
+            case INNER_CLASS_INITS:
+                return () -> normalizeInnerClassInits(body, dispatcher);
+            case NEST_BASED_PRIVATE_ACCESSES:
+                return () -> normalizeNestBasedPrivateAccesses(body, dispatcher);
+            case INNER_ENUMS:
+                return () -> normalizeInnerEnums(body);
+            case DYNAMIC_STRING_CONCAT_CASTS:
+                return () -> normalizeDynamicStringConcatCasts(body, dispatcher);
+            case DYNAMIC_STRING_CONSTANT_CONCAT:
+                return () -> normalizeDynamicStringConstantConcat(body, dispatcher);
+            default:
+                throw new IllegalArgumentException("Unknown pass " + pass);
+        }
+    }
+
+    private void runPass(int pass, Body body, Runnable normalization) {
+        Object event = NormalizationEvents.beginPass();
+        if (passTimings == null && event == null) {
+            normalization.run();
+            return;
+        }
+        long start = System.nanoTime();
+        long allocated = passTimings != null ? ThreadAllocation.allocatedBytes() : 0;
+        int[] hits = HITS.get();
+        int hitsBefore = hits[0];
+        try {
+            normalization.run();
+        } finally {
+            if (passTimings != null) passTimings[pass].record(start, allocated);
+            if (event != null) {
+                NormalizationEvents.commitPass(event, PASS_NAMES[pass], body.getMethod().getSignature(),
+                        hits[0] - hitsBefore);
+            }
+        }
+    }
+
+    // Counts a normalization for the pass events, next to its counter in the statistics
+    private static void countHit() {
+        HITS.get()[0]++;
+    }
+
     // Java 8 -> Java 11
-    private void normalizeDynamicStringConstantConcat(Body body) {
+    private void normalizeDynamicStringConstantConcat(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.isApplicable(DYNAMIC_STRING_CONSTANT_CONCAT)) {
+                if (statistics != null) statistics.count(statistics.skippedDynamicStringConstantConcat, body);
+                return;
+            }
             final String MAKE_CONCAT_WITH_CONSTANTS = "makeConcatWithConstants";
             UnitPatchingChain unitChain = body.getUnits();
             List<Unit> unitsToAdd = new ArrayList<>();
             List<Unit> unitsToRemove = new ArrayList<>();
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(DYNAMIC_STRING_CONSTANT_CONCAT)) {
                 if (!(unit instanceof AssignStmt)) continue;
                 AssignStmt assignStmt = (AssignStmt) unit;
                 Value rhs = assignStmt.getRightOp();
@@ -99,15 +291,8 @@ public class CoreBodyNormalizer {
                 List<Value> dynamicMethodArgs = new ArrayList<>();
                 dynamicMethodArgs.add(StringConstant.v(concatenatedArgs));
                 // Construct a new dynamicinvoke expression
-                List<Type> bootstrapTypes = new ArrayList<>();
-                bootstrapTypes.add(RefType.v("java.lang.invoke.MethodHandles$Lookup"));
-                bootstrapTypes.add(RefType.v("java.lang.String"));
-                bootstrapTypes.add(RefType.v("java.lang.invoke.MethodType"));
-                bootstrapTypes.add(RefType.v("java.lang.String"));
-                bootstrapTypes.add(ArrayType.v(RefType.v("java.lang.Object"), 1));
-
-                SootMethodRefImpl bootstrap = new SootMethodRefImpl(new SootClass("java.lang.invoke.StringConcatFactory"), "makeConcatWithConstants", bootstrapTypes, RefType.v("java.lang.invoke.CallSite"), false);
-                SootMethodRefImpl stringConcat = new SootMethodRefImpl(new SootClass("soot.dummy.InvokeDynamic"), "makeConcatWithConstants", new ArrayList<>(), RefType.v("java.lang.String"), false);
+                SootMethodRef bootstrap = referenceCache.getStringConcatBootstrap();
+                SootMethodRef stringConcat = referenceCache.getStringConcat(new ArrayList<>());
 
                 AssignStmt dynamicStringConcat = Jimple.v().newAssignStmt(
                         lhs,
@@ -124,7 +309,7 @@ public class CoreBodyNormalizer {
             }
 
             for (int i = 0; i < unitsToAdd.size(); i++) {
-                unitChain.swapWith(unitsToRemove.get(i), unitsToAdd.get((i)));
+                dispatcher.swap(unitsToRemove.get(i), unitsToAdd.get((i)));
             }
         } catch (Exception e) {
             // e.printStackTrace();
@@ -132,13 +317,17 @@ public class CoreBodyNormalizer {
     }
 
     // Java 8 -> Java 11
-    private void normalizeDynamicStringConcatCasts(Body body) {
+    private void normalizeDynamicStringConcatCasts(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.isApplicable(DYNAMIC_STRING_CONCAT_CASTS)) {
+                if (statistics != null) statistics.count(statistics.skippedDynamicStringConcatCasts, body);
+                return;
+            }
             final String MAKE_CONCAT_WITH_CONSTANTS = "makeConcatWithConstants";
             UnitPatchingChain unitChain = body.getUnits();
             List<Unit> unitsToRemove = new ArrayList<>();
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(DYNAMIC_STRING_CONCAT_CASTS)) {
                 try {
                     if (!(unit instanceof AssignStmt)) continue;
                     AssignStmt assignStmt = (AssignStmt) unit;
@@ -170,8 +359,9 @@ public class CoreBodyNormalizer {
                     int changedArgIndex = dynamicArgs.indexOf(lhs2);
                     dynamicInvokeExpr.setArg(changedArgIndex, castOp);
                     // Swap the parameter types
+                    // Work on a copy, the dummy method is shared by all classes that use the same concat signature
                     Type castOpOriginalType = castOp.getType();
-                    List<Type> parameterTypes = dynamicInvokeExpr.getMethod().getParameterTypes();
+                    List<Type> parameterTypes = new ArrayList<>(dynamicInvokeExpr.getMethod().getParameterTypes());
 
                     if (castOpOriginalType instanceof RefType) {
                         parameterTypes.set(changedArgIndex, RefType.v("java.lang.Object"));
@@ -179,21 +369,11 @@ public class CoreBodyNormalizer {
                         parameterTypes.set(changedArgIndex, castOpOriginalType);
                     }
 
-                    SootClass dummyInvokeDynamic = Scene.v().getSootClass("soot.dummy.InvokeDynamic");
                     Type returnType = dynamicInvokeExpr.getMethod().getReturnType();
-                    boolean methodAlreadyExisting = dummyInvokeDynamic.declaresMethod(MAKE_CONCAT_WITH_CONSTANTS, parameterTypes, returnType);
-
-                    // check if method with desired signature already exists
-                    SootMethod sm;
-                    if (!methodAlreadyExisting) {
-                        sm = new SootMethod(MAKE_CONCAT_WITH_CONSTANTS, parameterTypes, returnType);
-                        sm.setDeclaringClass(dummyInvokeDynamic);
-                        dummyInvokeDynamic.addMethod(sm);
-                        //                dynamicMethod.setParameterTypes(parameterTypes);
-                    } else {
-                        sm = dummyInvokeDynamic.getMethod(MAKE_CONCAT_WITH_CONSTANTS, parameterTypes, dynamicInvokeExpr.getMethod().getReturnType());
-                    }
-                    dynamicInvokeExpr.setMethodRef(sm.makeRef());
+
+                    // reuse the method with the desired signature if it already exists
+                    dynamicInvokeExpr.setMethodRef(referenceCache.getMethodRef(SootClass.INVOKEDYNAMIC_DUMMY_CLASS_NAME,
+                            MAKE_CONCAT_WITH_CONSTANTS, parameterTypes, returnType));
 
                     unitsToRemove.add(prevUnit);
                 } catch (Exception e) {
@@ -228,14 +408,17 @@ public class CoreBodyNormalizer {
     }
 
     // Java 8 -> Java 11
-    private void normalizeNestBasedPrivateAccesses(Body body) {
+    private void normalizeNestBasedPrivateAccesses(Body body, UnitDispatcher dispatcher) {
         try {
-            final String NEST_BASED_ACCESS_PATTERN = "access\\$\\d+";
+            if (!dispatcher.isApplicable(NEST_BASED_PRIVATE_ACCESSES)) {
+                if (statistics != null) statistics.count(statistics.skippedNestBasedPrivateAccesses, body);
+                return;
+            }
             UnitPatchingChain unitChain = body.getUnits();
             List<Unit> unitsToAdd = new ArrayList<>();
             List<Unit> unitsToRemove = new ArrayList<>();
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(NEST_BASED_PRIVATE_ACCESSES)) {
                 Value currentUnit = null;
                 Value newValue = null;
 
@@ -257,75 +440,33 @@ public class CoreBodyNormalizer {
                 List<Value> staticInvokeArgs = invokeExpr.getArgs();
                 SootMethod sm = staticInvokeExpr.getMethod();
 
-                if (!sm.getName().matches(NEST_BASED_ACCESS_PATTERN)) continue;
-                UnitPatchingChain callTargetUnits = sm.getActiveBody().getUnits();
-
-                // Get all relevant units from the bridge method
-                // Relevant units are all units between parameterRefs and the return statement
-                List<Unit> relevantCallTargetUnits = new ArrayList<>();
-                boolean parametersChecked = false;
-                for (Unit callTargetUnit : callTargetUnits) {
-                    if (SootHelper.isParameterRef(callTargetUnit)) {
-                        Unit nextUnit = callTargetUnits.getSuccOf(callTargetUnit);
-                        if (!SootHelper.isParameterRef(nextUnit)) {
-                            parametersChecked = true;
-                            continue;
-                        }
-                    } else {
-                        parametersChecked = true;
-                    }
-                    // There are still parameters left
-                    if (!parametersChecked) continue;
-                    // Do not add the return to the relevant units
-                    if (callTargetUnit instanceof ReturnStmt) break;
-                    if (callTargetUnit instanceof ReturnVoidStmt) break;
+                if (!NEST_BASED_ACCESS_PATTERN.matcher(sm.getName()).matches()) continue;
 
-                    relevantCallTargetUnits.add(callTargetUnit);
-                }
+                // Bridges are summarized before the packs, a bridge without a summary has no body to analyze
+                AccessBridge accessBridge = accessBridges.get(sm);
+                if (accessBridge == null) return;
+                boolean fieldAccess = accessBridge.isFieldAccess();
 
-                if (relevantCallTargetUnits.size() < 1) continue;
-                Unit relevantUnit = relevantCallTargetUnits.get(relevantCallTargetUnits.size() - 1);
-
-                Value relevantExpression = null;
-                boolean fieldAccess = false;
-                if (relevantUnit instanceof AssignStmt) {
-                    AssignStmt relevantUnitAssignStmt = (AssignStmt) relevantUnit;
-                    Value rightOp = relevantUnitAssignStmt.getRightOp();
-                    Value leftOp = relevantUnitAssignStmt.getLeftOp();
-                    if (rightOp instanceof Local) {
-                        relevantExpression = leftOp;
-                        fieldAccess = true;
-                    } else {
-                        relevantExpression = rightOp;
-                    }
-                } else if (relevantUnit instanceof InvokeStmt) {
-                    InvokeStmt relevantUnitInvokeStmt = (InvokeStmt) relevantUnit;
-                    relevantExpression = relevantUnitInvokeStmt.getInvokeExpr();
-                }
-
-                if (relevantExpression instanceof FieldRef) {
+                switch (accessBridge.getKind()) {
                     // relevant unit refers to a private class field
-                    FieldRef relevantUnitInstanceFieldRef = (FieldRef) relevantExpression;
-                    SootFieldRef relevantFieldRef = relevantUnitInstanceFieldRef.getFieldRef();
-
-                    if (relevantExpression instanceof InstanceFieldRef) {
-                        newValue = Jimple.v().newInstanceFieldRef(staticInvokeArgs.get(0), relevantFieldRef);
-                    } else if (relevantExpression instanceof StaticFieldRef) {
-                        newValue = Jimple.v().newStaticFieldRef(relevantFieldRef);
-                    }
-                } else if (relevantExpression instanceof InvokeExpr) {
+                    case INSTANCE_FIELD:
+                        newValue = Jimple.v().newInstanceFieldRef(staticInvokeArgs.get(0), accessBridge.getFieldRef());
+                        break;
+                    case STATIC_FIELD:
+                        newValue = Jimple.v().newStaticFieldRef(accessBridge.getFieldRef());
+                        break;
                     // relevant unit refers to a private method
-                    InvokeExpr relevantInvokeExpr = (InvokeExpr) relevantExpression;
-                    SootMethodRef relevantMethodRef = relevantInvokeExpr.getMethodRef();
-
-                    if (relevantInvokeExpr instanceof StaticInvokeExpr) {
-                        newValue = Jimple.v().newStaticInvokeExpr(relevantMethodRef, staticInvokeArgs);
-                    } else if (relevantInvokeExpr instanceof VirtualInvokeExpr) {
-                        newValue = Jimple.v().newVirtualInvokeExpr((Local) staticInvokeArgs.get(0), relevantMethodRef, staticInvokeArgs.subList(1, staticInvokeArgs.size()));
-                    } else if (relevantExpression instanceof SpecialInvokeExpr) {
-                        newValue = Jimple.v().newSpecialInvokeExpr((Local) staticInvokeArgs.get(0), relevantMethodRef, staticInvokeArgs.subList(1, staticInvokeArgs.size()));
-                        ;
-                    }
+                    case STATIC_INVOKE:
+                        newValue = Jimple.v().newStaticInvokeExpr(accessBridge.getMethodRef(), staticInvokeArgs);
+                        break;
+                    case VIRTUAL_INVOKE:
+                        newValue = Jimple.v().newVirtualInvokeExpr((Local) staticInvokeArgs.get(0), accessBridge.getMethodRef(), staticInvokeArgs.subList(1, staticInvokeArgs.size()));
+                        break;
+                    case SPECIAL_INVOKE:
+                        newValue = Jimple.v().newSpecialInvokeExpr((Local) staticInvokeArgs.get(0), accessBridge.getMethodRef(), staticInvokeArgs.subList(1, staticInvokeArgs.size()));
+                        break;
+                    default:
+                        break;
                 }
 
                 if (newValue == null) continue;
@@ -345,7 +486,7 @@ public class CoreBodyNormalizer {
                             );
                             unitsToAdd.add(newFieldAccess);
                             unitsToRemove.add(unit);
-                        } else if (relevantCallTargetUnits.size() > 1) {
+                        } else if (accessBridge.getRelevantUnitCount() > 1) {
                             // Bridge method contains more than one relevant statement
 //                        LocalGenerator lg = new DefaultLocalGenerator(body);
 //                        Unit newFieldAccess = Jimple.v().newAssignStmt(
@@ -364,17 +505,93 @@ public class CoreBodyNormalizer {
             }
 
             for (int i = 0; i < unitsToAdd.size(); i++) {
-                unitChain.swapWith(unitsToRemove.get(i), unitsToAdd.get(i));
-                if (statistics != null) statistics.nestBasedAccessControl += 1;
+                dispatcher.swap(unitsToRemove.get(i), unitsToAdd.get(i));
+                if (statistics != null) statistics.count(statistics.nestBasedAccessControl, body);
+                countHit();
             }
         } catch (Exception e) {
             // e.printStackTrace();
         }
     }
 
+    // Finds the field or method an access$ bridge method forwards to
+    private AccessBridge analyzeAccessBridge(SootMethod sm) {
+        UnitPatchingChain callTargetUnits = sm.retrieveActiveBody().getUnits();
+
+        // Get all relevant units from the bridge method
+        // Relevant units are all units between parameterRefs and the return statement
+        List<Unit> relevantCallTargetUnits = new ArrayList<>();
+        boolean parametersChecked = false;
+        for (Unit callTargetUnit : callTargetUnits) {
+            if (SootHelper.isParameterRef(callTargetUnit)) {
+                Unit nextUnit = callTargetUnits.getSuccOf(callTargetUnit);
+                if (!SootHelper.isParameterRef(nextUnit)) {
+                    parametersChecked = true;
+                    continue;
+                }
+            } else {
+                parametersChecked = true;
+            }
+            // There are still parameters left
+            if (!parametersChecked) continue;
+            // Do not add the return to the relevant units
+            if (callTargetUnit instanceof ReturnStmt) break;
+            if (callTargetUnit instanceof ReturnVoidStmt) break;
+
+            relevantCallTargetUnits.add(callTargetUnit);
+        }
+
+        if (relevantCallTargetUnits.size() < 1) return new AccessBridge(AccessBridge.Kind.NONE, null, null, false, 0);
+        Unit relevantUnit = relevantCallTargetUnits.get(relevantCallTargetUnits.size() - 1);
+
+        Value relevantExpression = null;
+        boolean fieldAccess = false;
+        if (relevantUnit instanceof AssignStmt) {
+            AssignStmt relevantUnitAssignStmt = (AssignStmt) relevantUnit;
+            Value rightOp = relevantUnitAssignStmt.getRightOp();
+            Value leftOp = relevantUnitAssignStmt.getLeftOp();
+            if (rightOp instanceof Local) {
+                relevantExpression = leftOp;
+                fieldAccess = true;
+            } else {
+                relevantExpression = rightOp;
+            }
+        } else if (relevantUnit instanceof InvokeStmt) {
+            InvokeStmt relevantUnitInvokeStmt = (InvokeStmt) relevantUnit;
+            relevantExpression = relevantUnitInvokeStmt.getInvokeExpr();
+        }
+
+        AccessBridge.Kind kind = AccessBridge.Kind.NONE;
+        SootFieldRef fieldRef = null;
+        SootMethodRef methodRef = null;
+        if (relevantExpression instanceof FieldRef) {
+            fieldRef = ((FieldRef) relevantExpression).getFieldRef();
+            if (relevantExpression instanceof InstanceFieldRef) {
+                kind = AccessBridge.Kind.INSTANCE_FIELD;
+            } else if (relevantExpression instanceof StaticFieldRef) {
+                kind = AccessBridge.Kind.STATIC_FIELD;
+            }
+        } else if (relevantExpression instanceof InvokeExpr) {
+            methodRef = ((InvokeExpr) relevantExpression).getMethodRef();
+            if (relevantExpression instanceof StaticInvokeExpr) {
+                kind = AccessBridge.Kind.STATIC_INVOKE;
+            } else if (relevantExpression instanceof VirtualInvokeExpr) {
+                kind = AccessBridge.Kind.VIRTUAL_INVOKE;
+            } else if (relevantExpression instanceof SpecialInvokeExpr) {
+                kind = AccessBridge.Kind.SPECIAL_INVOKE;
+            }
+        }
+
+        return new AccessBridge(kind, fieldRef, methodRef, fieldAccess, relevantCallTargetUnits.size());
+    }
+
     // Java 8 -> Java 11
-    private void normalizeInnerClassInits(Body body) {
+    private void normalizeInnerClassInits(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.isApplicable(INNER_CLASS_INITS)) {
+                if (statistics != null) statistics.count(statistics.skippedInnerClassInits, body);
+                return;
+            }
             final String ANON_INNER_CLASS_PATTERN = "\\$\\d+";
             String declaringClassName = body.getMethod().getDeclaringClass().getName();
 
@@ -385,7 +602,7 @@ public class CoreBodyNormalizer {
             List<Unit> unitsToAdd = new ArrayList<>();
             List<SootClass> classesToRemove = new ArrayList<>();
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(INNER_CLASS_INITS)) {
                 if (!(unit instanceof InvokeStmt)) continue;
                 InvokeStmt invokeStmt = (InvokeStmt) unit;
                 InvokeExpr invokeExpr = invokeStmt.getInvokeExpr();
@@ -427,11 +644,12 @@ public class CoreBodyNormalizer {
                 unitsToAdd.add(newInvokeStmt);
                 unitsToRemove.add(unit);
                 classesToRemove.add(sc);
-                if (statistics != null) statistics.innerClassInstantiation += 1;
+                if (statistics != null) statistics.count(statistics.innerClassInstantiation, body);
+                countHit();
             }
 
             for (int i = 0; i < unitsToAdd.size(); i++) {
-                unitChain.swapWith(unitsToRemove.get(i), unitsToAdd.get(i));
+                dispatcher.swap(unitsToRemove.get(i), unitsToAdd.get(i));
             }
 //        further verify the removal of inner classes
 //        classesToRemove.forEach(loadedClasses::remove);
@@ -441,7 +659,7 @@ public class CoreBodyNormalizer {
     }
 
     // Javac7 -> Javac8
-    private void removeRedundantTraps(Body body) {
+    private void removeRedundantTraps(Body body, UnitDispatcher dispatcher) {
         // Pattern
         // 1. only for java.lang.Throwable
         // 2. always directly after a @caughtexception
@@ -449,6 +667,10 @@ public class CoreBodyNormalizer {
         // 4. if multiple, it's always the first @caugtexception label that is removed
         // 5. remove all instances of this, even though compiler only removes one (do it to old and new version, so it does not matter)
         try {
+            if (!dispatcher.hasFeature(BodyFeatures.TRAPS)) {
+                if (statistics != null) statistics.count(statistics.skippedRedundantTraps, body);
+                return;
+            }
             final String THROWABLE_EXCEPTION = "java.lang.Throwable";
             Chain<Trap> trapChain = body.getTraps();
             UnitPatchingChain unitChain = body.getUnits();
@@ -473,7 +695,8 @@ public class CoreBodyNormalizer {
 
 
                 trapsToRemove.add(trap);
-                if (statistics != null) statistics.emptyTryCatch += 1;
+                if (statistics != null) statistics.count(statistics.emptyTryCatch, body);
+                countHit();
             }
 
             trapsToRemove.forEach(trapChain::remove);
@@ -483,8 +706,12 @@ public class CoreBodyNormalizer {
     }
 
     // Javac8 -> javac11
-    private void normalizeTraps(Body body) {
+    private void normalizeTraps(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.hasFeature(BodyFeatures.TRAPS)) {
+                if (statistics != null) statistics.count(statistics.skippedTraps, body);
+                return;
+            }
             final String INPUTSTREAM_CLOSE_SIGNATURE = "<java.io.InputStream: void close()>";
             Chain<Unit> unitChain = body.getUnits();
             Chain<Trap> trapChain = body.getTraps();
@@ -512,7 +739,8 @@ public class CoreBodyNormalizer {
 
                 unitChain.remove(trapStart);
                 trapsToRemove.add(trap);
-                if (statistics != null) statistics.tryWithResources += 1;
+                if (statistics != null) statistics.count(statistics.tryWithResources, body);
+                countHit();
             }
 
             trapsToRemove.forEach(trapChain::remove);
@@ -718,8 +946,12 @@ public class CoreBodyNormalizer {
     }
 
     // Javac11 -> Javac17
-    private void normalizeEnum(Body body) {
+    private void normalizeEnum(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.isApplicable(ENUM)) {
+                if (statistics != null) statistics.count(statistics.skippedEnum, body);
+                return;
+            }
             SootMethod method = body.getMethod();
             SootClass declaringClass = method.getDeclaringClass();
             // Check if declaring class is enum
@@ -742,7 +974,7 @@ public class CoreBodyNormalizer {
             Value enumRef = null;
             int enumSize = 0;
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(ENUM)) {
                 if (!(unit instanceof AssignStmt)) continue;
                 AssignStmt assignStmt = (AssignStmt) unit;
                 enumRef = assignStmt.getLeftOp();
@@ -804,7 +1036,7 @@ public class CoreBodyNormalizer {
                     enumRef,
                     Jimple.v().newStaticInvokeExpr(newEnumMethod.makeRef())
             );
-            unitChain.insertBefore(newEnumMethodInvoke, enumInit);
+            dispatcher.insertBefore(newEnumMethodInvoke, enumInit);
 
             // remove units from old method body
             unitsToRemove.forEach((unitChain::remove));
@@ -856,19 +1088,24 @@ public class CoreBodyNormalizer {
                 }
             }
 
-            if (statistics != null) statistics.enumUsage += 1;
+            if (statistics != null) statistics.count(statistics.enumUsage, body);
+            countHit();
         } catch (Exception e) {
             // e.printStackTrace();
         }
     }
 
     // Javac8 -> Javac11
-    private void normalizeDuplicateTypeCast(Body body) {
+    private void normalizeDuplicateTypeCast(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.isApplicable(DUPLICATE_TYPE_CAST)) {
+                if (statistics != null) statistics.count(statistics.skippedDuplicateTypeCast, body);
+                return;
+            }
             UnitPatchingChain unitChain = body.getUnits();
             List<Unit> unitsToRemove = new ArrayList<>();
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(DUPLICATE_TYPE_CAST)) {
                 if (!(unit instanceof AssignStmt)) continue;
                 AssignStmt assignStmt1 = (AssignStmt) unit;
                 Value lhs1 = assignStmt1.getLeftOp();
@@ -892,7 +1129,8 @@ public class CoreBodyNormalizer {
 
                 assignStmt1.setLeftOp(lhs2);
                 unitsToRemove.add(followingUnit);
-                if (statistics != null) statistics.duplicateCheckcast += 1;
+                if (statistics != null) statistics.count(statistics.duplicateCheckcast, body);
+                countHit();
             }
 
             unitsToRemove.forEach(unitChain::remove);
@@ -903,15 +1141,19 @@ public class CoreBodyNormalizer {
 
     // Target 6 - Target 7
     // Javac8 -> Javac11
-    private void normalizeNullChecks(Body body) {
+    private void normalizeNullChecks(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.isApplicable(NULL_CHECKS)) {
+                if (statistics != null) statistics.count(statistics.skippedNullChecks, body);
+                return;
+            }
             final String REQUIRENONNULL_METHOD_SIGNATURE = "<java.util.Objects: java.lang.Object requireNonNull(java.lang.Object)>";
 
             UnitPatchingChain unitChain = body.getUnits();
             List<Unit> unitsToAdd = new ArrayList<>();
             List<Unit> unitsToRemove = new ArrayList<>();
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(NULL_CHECKS)) {
                 if (!(unit instanceof InvokeStmt)) continue;
                 InvokeStmt invokeStmt = (InvokeStmt) unit;
                 InvokeExpr invokeExpr = invokeStmt.getInvokeExpr();
@@ -924,12 +1166,9 @@ public class CoreBodyNormalizer {
                 if (!(invokedMethodSignature.equals(REQUIRENONNULL_METHOD_SIGNATURE))) continue;
 
                 // Create new normalized virtualinvoke call: virtualinvoke r2.<java.lang.Object: java.lang.Class getClass()>();
-                SootMethod newRequireNonNullMethod = new SootMethod("getClass", new ArrayList<>(), RefType.v("java.lang.Class"));
-                SootClass objectClass = new SootClass("java.lang.Object");
-                objectClass.addMethod(newRequireNonNullMethod);
                 VirtualInvokeExpr normalizedRequireNonNullMethod = Jimple.v().newVirtualInvokeExpr(
                         (Local) staticInvokeExpr.getArg(0),
-                        newRequireNonNullMethod.makeRef()
+                        referenceCache.getObjectGetClass()
                 );
                 InvokeStmt newInvokeStmt = Jimple.v().newInvokeStmt(normalizedRequireNonNullMethod);
 
@@ -937,9 +1176,10 @@ public class CoreBodyNormalizer {
                 unitsToRemove.add(unit);
             }
             for (int i = 0; i < unitsToAdd.size(); i++) {
-                unitChain.swapWith(unitsToRemove.get(i), unitsToAdd.get(i));
-                if (statistics != null) statistics.methodRefOperator += 1;
-                if (statistics != null) statistics.outerClassObjectCreation += 1;
+                dispatcher.swap(unitsToRemove.get(i), unitsToAdd.get(i));
+                if (statistics != null) statistics.count(statistics.methodRefOperator, body);
+                if (statistics != null) statistics.count(statistics.outerClassObjectCreation, body);
+                countHit();
             }
         } catch (Exception e) {
             // e.printStackTrace();
@@ -947,8 +1187,12 @@ public class CoreBodyNormalizer {
     }
 
     // Javac8 -> Javac11
-    private void normalizeBufferMethodCalls(Body body) {
+    private void normalizeBufferMethodCalls(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.isApplicable(BUFFER_METHOD_CALLS)) {
+                if (statistics != null) statistics.count(statistics.skippedBufferMethodCalls, body);
+                return;
+            }
             final String SUB_BUFFER_REGEX = "java\\.nio\\.[\\w]+Buffer";
             final String BUFFER_REGEX = "java\\.nio\\.[\\w]*Buffer";
             UnitPatchingChain unitChain = body.getUnits();
@@ -958,7 +1202,7 @@ public class CoreBodyNormalizer {
 
             List<BufferCall> bufferUsages = new ArrayList<>();
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(BUFFER_METHOD_CALLS)) {
                 if (unit instanceof AssignStmt) {
                     AssignStmt assignStmt = (AssignStmt) unit;
                     Value lhs = assignStmt.getLeftOp();
@@ -974,19 +1218,18 @@ public class CoreBodyNormalizer {
                     SootMethod bufferMethod = virtualInvokeExpr.getMethod();
 
                     if (!bufferMethod.getReturnType().toString().matches(BUFFER_REGEX)) continue;
-                    SootMethod newBufferInvoke = new SootMethod(
+                    SootMethodRef newBufferInvoke = referenceCache.getMethodRef(
+                            bufferName,
                             virtualInvokeExpr.getMethod().getName(),
                             virtualInvokeExpr.getMethod().getParameterTypes(),
                             RefType.v(virtualInvokeExpr.getMethodRef().getDeclaringClass())
                     );
-                    SootClass newBufferClass = new SootClass(bufferName);
-                    newBufferClass.addMethod(newBufferInvoke);
 
                     Unit bufferInvoke = Jimple.v().newAssignStmt(
                             lhs,
                             Jimple.v().newVirtualInvokeExpr(
                                     (Local) virtualInvokeExpr.getBase(),
-                                    newBufferInvoke.makeRef(),
+                                    newBufferInvoke,
                                     virtualInvokeExpr.getArgs()
                             )
                     );
@@ -1011,18 +1254,17 @@ public class CoreBodyNormalizer {
                         SootMethod bufferMethod = virtualInvokeExpr.getMethod();
 
                         if (!bufferMethod.getReturnType().toString().matches(BUFFER_REGEX)) continue;
-                        SootMethod newBufferInvoke = new SootMethod(
+                        SootMethodRef newBufferInvoke = referenceCache.getMethodRef(
+                                bufferName,
                                 virtualInvokeExpr.getMethod().getName(),
                                 virtualInvokeExpr.getMethod().getParameterTypes(),
                                 RefType.v(virtualInvokeExpr.getMethodRef().getDeclaringClass())
                         );
-                        SootClass newBufferClass = new SootClass(bufferName);
-                        newBufferClass.addMethod(newBufferInvoke);
 
                         Unit bufferInvoke = Jimple.v().newInvokeStmt(
                                 Jimple.v().newVirtualInvokeExpr(
                                         (Local) virtualInvokeExpr.getBase(),
-                                        newBufferInvoke.makeRef(),
+                                        newBufferInvoke,
                                         virtualInvokeExpr.getArgs()
                                 )
                         );
@@ -1034,18 +1276,17 @@ public class CoreBodyNormalizer {
                     for (BufferCall bc : bufferUsages) {
                         if (!bc.getLocal().equals(base)) continue;
 
-                        SootMethod newBufferInvoke = new SootMethod(
+                        SootMethodRef newBufferInvoke = referenceCache.getMethodRef(
+                                bc.getBuffer(),
                                 virtualInvokeExpr.getMethod().getName(),
                                 virtualInvokeExpr.getMethod().getParameterTypes(),
                                 RefType.v(bc.getBuffer())
                         );
-                        SootClass newBufferClass = new SootClass(bc.getBuffer());
-                        newBufferClass.addMethod(newBufferInvoke);
 
                         Unit bufferInvoke = Jimple.v().newInvokeStmt(
                                 Jimple.v().newVirtualInvokeExpr(
                                         (Local) virtualInvokeExpr.getBase(),
-                                        newBufferInvoke.makeRef(),
+                                        newBufferInvoke,
                                         virtualInvokeExpr.getArgs()
                                 )
                         );
@@ -1056,8 +1297,9 @@ public class CoreBodyNormalizer {
                 }
             }
             for (int i = 0; i < unitsToAdd.size(); i++) {
-                unitChain.swapWith(unitsToRemove.get(i), unitsToAdd.get(i));
-                if (statistics != null) statistics.bufferMethod += 1;
+                dispatcher.swap(unitsToRemove.get(i), unitsToAdd.get(i));
+                if (statistics != null) statistics.count(statistics.bufferMethod, body);
+                countHit();
             }
 
             // fix locals
@@ -1070,14 +1312,18 @@ public class CoreBodyNormalizer {
     }
 
     // Java 8 -> Java 11
-    private void normalizePrivateMethodCalls(Body body) {
+    private void normalizePrivateMethodCalls(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.isApplicable(PRIVATE_METHOD_CALLS)) {
+                if (statistics != null) statistics.count(statistics.skippedPrivateMethodCalls, body);
+                return;
+            }
             UnitPatchingChain unitChain = body.getUnits();
 
             List<Unit> unitsToAdd = new ArrayList<>();
             List<Unit> unitsToRemove = new ArrayList<>();
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(PRIVATE_METHOD_CALLS)) {
                 Unit specialInvokePrivate = null;
                 try {
                     if (unit instanceof AssignStmt) {
@@ -1141,8 +1387,9 @@ public class CoreBodyNormalizer {
 
             // Replace old virtualinvoke by new specialinvoke
             for (int i = 0; i < unitsToAdd.size(); i++) {
-                unitChain.swapWith(unitsToRemove.get(i), unitsToAdd.get(i));
-                if (statistics != null) statistics.privateMethodInvocation += 1;
+                dispatcher.swap(unitsToRemove.get(i), unitsToAdd.get(i));
+                if (statistics != null) statistics.count(statistics.privateMethodInvocation, body);
+                countHit();
             }
         } catch (Exception e) {
             // e.printStackTrace();
@@ -1150,15 +1397,21 @@ public class CoreBodyNormalizer {
     }
 
     // Java 8 -> Java 11
-    private void normalizeStringConcat(Body body) {
+    private void normalizeStringConcat(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.isApplicable(STRING_CONCAT)) {
+                if (statistics != null) statistics.count(statistics.skippedStringConcat, body);
+                return;
+            }
             final String STRINGBUILDER_TYPE = "java.lang.StringBuilder";
             final String STRINGBUILDER_INIT_SIGNATURE = "<java.lang.StringBuilder: void <init>()>";
 
             UnitPatchingChain unitChain = body.getUnits();
             List<StringBuilderConcat> stringBuilderConcats = new ArrayList<>();
+            // Earliest concat that contains a local as alias
+            Map<Local, StringBuilderConcat> concatsByAlias = new IdentityHashMap<>();
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(STRING_CONCAT)) {
                 // Check for the StringBuilder <init> call
                 if (unit instanceof InvokeStmt) {
                     InvokeStmt invokeStmt = (InvokeStmt) unit;
@@ -1172,12 +1425,12 @@ public class CoreBodyNormalizer {
                     Local local = (Local) value;
 
                     // Check if we have a StringBuilderCall
-                    Optional<StringBuilderConcat> sbc = stringBuilderConcats.stream().filter(sb -> sb.aliasContained(local)).findFirst();
-                    if (!sbc.isPresent()) continue;
+                    StringBuilderConcat sbc = concatsByAlias.get(local);
+                    if (sbc == null) continue;
 
                     // specialinvoke of StringBuilder constructor
                     if (!specialInvokeExpr.getMethodRef().getSignature().equals(STRINGBUILDER_INIT_SIGNATURE)) continue;
-                    sbc.get().addStringBuilderCall(unit);
+                    sbc.addStringBuilderCall(unit);
                 }
 
                 if (!(unit instanceof AssignStmt)) continue;
@@ -1197,8 +1450,9 @@ public class CoreBodyNormalizer {
 
                     if (!newExpr.getBaseType().toQuotedString().equals(STRINGBUILDER_TYPE)) continue;
                     // We have a new StringBuilder call
-                    StringBuilderConcat sbc = new StringBuilderConcat(lhsLocal, unit);
+                    StringBuilderConcat sbc = new StringBuilderConcat(lhsLocal, unit, stringBuilderConcats.size());
                     stringBuilderConcats.add(sbc);
+                    concatsByAlias.putIfAbsent(lhsLocal, sbc);
                 }
 
                 // Check for StringBuilder.append and StringBuilder.toString calls
@@ -1212,14 +1466,13 @@ public class CoreBodyNormalizer {
                 Local sbCallTarget = (Local) virtualInvokeExpr.getBase();
 
                 // Now get the corresponding sbc Object
-                Optional<StringBuilderConcat> sbcOptional = stringBuilderConcats.stream().filter(sb -> sb.aliasContained(sbCallTarget)).findFirst();
-                if (!sbcOptional.isPresent()) continue;
-
-                StringBuilderConcat sbc = sbcOptional.get();
+                StringBuilderConcat sbc = concatsByAlias.get(sbCallTarget);
+                if (sbc == null) continue;
 
                 if (sm.getName().equals("append")) {
                     // We have a StringBuilder.append call
                     sbc.addAlias(lhsLocal);
+                    concatsByAlias.merge(lhsLocal, sbc, (current, added) -> current.getIndex() < added.getIndex() ? current : added);
                     sbc.addStringBuilderCall(unit);
 
                     // Parameter type of StringBuilder.append call
@@ -1285,15 +1538,8 @@ public class CoreBodyNormalizer {
                     sbc.setEndUnit(unit);
 
                     // Construct a new dynamicinvoke expression
-                    List<Type> bootstrapTypes = new ArrayList<>();
-                    bootstrapTypes.add(RefType.v("java.lang.invoke.MethodHandles$Lookup"));
-                    bootstrapTypes.add(RefType.v("java.lang.String"));
-                    bootstrapTypes.add(RefType.v("java.lang.invoke.MethodType"));
-                    bootstrapTypes.add(RefType.v("java.lang.String"));
-                    bootstrapTypes.add(ArrayType.v(RefType.v("java.lang.Object"), 1));
-
-                    SootMethodRefImpl bootstrap = new SootMethodRefImpl(new SootClass("java.lang.invoke.StringConcatFactory"), "makeConcatWithConstants", bootstrapTypes, RefType.v("java.lang.invoke.CallSite"), false);
-                    SootMethodRefImpl stringConcat = new SootMethodRefImpl(new SootClass("soot.dummy.InvokeDynamic"), "makeConcatWithConstants", sbc.getDynamicTypes(), RefType.v("java.lang.String"), false);
+                    SootMethodRef bootstrap = referenceCache.getStringConcatBootstrap();
+                    SootMethodRef stringConcat = referenceCache.getStringConcat(sbc.getDynamicTypes());
 
                     List<Value> bootstrapArgs = new ArrayList<>();
                     bootstrapArgs.add(StringConstant.v(sbc.getTemplate()));
@@ -1315,10 +1561,11 @@ public class CoreBodyNormalizer {
             for (StringBuilderConcat sbc : stringBuilderConcats) {
                 if (sbc.getEndUnit() == null) continue;
                 if (sbc.getNewStringConcatCall() == null) continue;
-                unitChain.swapWith(sbc.getEndUnit(), sbc.getNewStringConcatCall());
-                unitChain.removeAll(sbc.getStringBuilderCalls());
-                if (statistics != null) statistics.stringConstantConcat += 1;
-                if (statistics != null) statistics.dynamicStringConcat += 1;
+                dispatcher.swap(sbc.getEndUnit(), sbc.getNewStringConcatCall());
+                sbc.getStringBuilderCalls().forEach(unitChain::remove);
+                if (statistics != null) statistics.count(statistics.stringConstantConcat, body);
+                if (statistics != null) statistics.count(statistics.dynamicStringConcat, body);
+                countHit();
             }
         } catch (Exception e) {
             // e.printStackTrace();
@@ -1327,12 +1574,16 @@ public class CoreBodyNormalizer {
     }
 
     // Javac5 -> Javac6
-    private void normalizeArithmeticOperations(Body body) {
+    private void normalizeArithmeticOperations(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.isApplicable(ARITHMETIC_OPERATIONS)) {
+                if (statistics != null) statistics.count(statistics.skippedArithmetic, body);
+                return;
+            }
             List<Unit> unitsToRemove = new ArrayList<>();
             UnitPatchingChain unitChain = body.getUnits();
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(ARITHMETIC_OPERATIONS)) {
                 for (ValueBox vb : unit.getUseBoxes()) {
                     Value v = vb.getValue();
 
@@ -1359,7 +1610,8 @@ public class CoreBodyNormalizer {
                     vb.setValue(subtraction);
 
                     unitsToRemove.add(prevUnit);
-                    if (statistics != null) statistics.arithmetic += 1;
+                    if (statistics != null) statistics.count(statistics.arithmetic, body);
+                    countHit();
                 }
             }
             unitsToRemove.forEach(unitChain::remove);
@@ -1369,10 +1621,13 @@ public class CoreBodyNormalizer {
     }
 
     // Javac6 -> javac7
-    private void normalizeCharSequenceToStringInvoke(Body body) {
+    private void normalizeCharSequenceToStringInvoke(Body body, UnitDispatcher dispatcher) {
         try {
+            if (!dispatcher.isApplicable(CHAR_SEQUENCE_TO_STRING)) {
+                if (statistics != null) statistics.count(statistics.skippedCharSequenceToString, body);
+                return;
+            }
             final String CHARSEQUENCE_CLASS = "java.lang.CharSequence";
-            final String OBJECT_CLASS = "java.lang.Object";
             final String TOSTRING_METHOD = "toString";
 
             UnitPatchingChain unitChain = body.getUnits();
@@ -1380,7 +1635,7 @@ public class CoreBodyNormalizer {
             List<Unit> unitsToAdd = new ArrayList<>();
             List<Unit> unitsToRemove = new ArrayList<>();
 
-            for (Unit unit : unitChain) {
+            for (Unit unit : dispatcher.unitsFor(CHAR_SEQUENCE_TO_STRING)) {
                 Unit virtualInvokeCharSequence = null;
 
                 if (unit instanceof AssignStmt) {
@@ -1399,17 +1654,15 @@ public class CoreBodyNormalizer {
                     if (!calledMethod.getDeclaringClass().getName().equals(CHARSEQUENCE_CLASS)) continue;
                     if (!calledMethod.getName().equals(TOSTRING_METHOD)) continue;
 
-                    // Create new toString method of the java.lang.Object class
-                    SootMethod toString = new SootMethod(TOSTRING_METHOD, new ArrayList<>(), RefType.v("java.lang.String"));
-                    SootClass objectClass = new SootClass(OBJECT_CLASS);
-                    objectClass.addMethod(toString);
+                    // Get the toString method of the java.lang.Object class
+                    SootMethodRef toString = referenceCache.getObjectToString();
 
                     // Create new AssignStmt that contains a virtualinvoke
                     virtualInvokeCharSequence = Jimple.v().newAssignStmt(
                             lhs,
                             Jimple.v().newVirtualInvokeExpr(
                                     (Local) interfaceInvoke.getBase(),
-                                    toString.makeRef(),
+                                    toString,
                                     interfaceInvoke.getArgs()
                             )
                     );
@@ -1429,16 +1682,14 @@ public class CoreBodyNormalizer {
                     if (!calledMethod.getDeclaringClass().getName().equals(CHARSEQUENCE_CLASS)) continue;
                     if (!calledMethod.getName().equals(TOSTRING_METHOD)) continue;
 
-                    // Create new toString method of the java.lang.Object class
-                    SootMethod toString = new SootMethod(TOSTRING_METHOD, new ArrayList<>(), RefType.v("java.lang.String"));
-                    SootClass objectClass = new SootClass(OBJECT_CLASS);
-                    objectClass.addMethod(toString);
+                    // Get the toString method of the java.lang.Object class
+                    SootMethodRef toString = referenceCache.getObjectToString();
 
                     // Create a new InvokeStmt that contains a virtualinvoke
                     virtualInvokeCharSequence = Jimple.v().newInvokeStmt(
                             Jimple.v().newVirtualInvokeExpr(
                                     (Local) interfaceInvoke.getBase(),
-                                    toString.makeRef(),
+                                    toString,
                                     interfaceInvoke.getArgs()
                             )
                     );
@@ -1453,8 +1704,9 @@ public class CoreBodyNormalizer {
 
             // Replace old interfaceinvoke by new virtualinvoke
             for (int i = 0; i < unitsToAdd.size(); i++) {
-                unitChain.swapWith(unitsToRemove.get(i), unitsToAdd.get(i));
-                if (statistics != null) statistics.charSequenceToString += 1;
+                dispatcher.swap(unitsToRemove.get(i), unitsToAdd.get(i));
+                if (statistics != null) statistics.count(statistics.charSequenceToString, body);
+                countHit();
             }
         } catch (Exception e) {
             // e.printStackTrace();
@@ -2,21 +2,120 @@ package jnorm.core;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class FileHandler {
 
     public static void generateFileFromString(String content, String filePath) {
         try {
-            Files.write(Paths.get(filePath), content.getBytes(StandardCharsets.UTF_8));
+            writeFile(content, filePath);
         } catch (IOException ex) {
             System.err.print("Error while writing file: " + ex.getMessage());
             ex.printStackTrace();
         }
     }
 
+    public static void writeFile(String content, String filePath) throws IOException {
+        Files.write(Paths.get(filePath), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the content unless the file already has exactly this content, so unchanged files keep their modification time.
+     *
+     * @param sync force the content to the storage device before it replaces the file
+     * @return false if the file was unchanged and not written
+     */
+    public static boolean writeFileIfChanged(byte[] content, Path file, boolean sync) throws IOException {
+        if (hasContent(file, content)) return false;
+        writeFileAtomically(content, file, sync);
+        return true;
+    }
+
+    /**
+     * Writes the content to a temporary file next to the file and renames it over the file, so readers never see a
+     * partially written file. A replaced file keeps its permissions, a new file gets the default permissions.
+     *
+     * @param sync force the content and the rename to the storage device
+     */
+    public static void writeFileAtomically(byte[] content, Path file, boolean sync) throws IOException {
+        Path tempFile = createTempFile(file);
+        try {
+            writeFile(content, tempFile, sync);
+            try {
+                Files.setPosixFilePermissions(tempFile, Files.getPosixFilePermissions(file));
+            } catch (NoSuchFileException | UnsupportedOperationException e) {
+                // New file or no POSIX permissions, the temporary file already has the default permissions
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (sync) syncDirectory(file.toAbsolutePath().getParent());
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    // Files.createTempFile would restrict the file to its owner, a file created directly gets the permissions of the umask
+    private static Path createTempFile(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        while (true) {
+            Path tempFile = dir.resolve("." + file.getFileName() + "." + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+            try {
+                return Files.createFile(tempFile);
+            } catch (FileAlreadyExistsException e) {
+                // Try the next name
+            }
+        }
+    }
+
+    /**
+     * @param sync force the content to the storage device before the file is closed
+     */
+    public static void writeFile(byte[] content, Path file, boolean sync) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (sync) channel.force(true);
+        }
+    }
+
+    public static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces the entries of the directory to the storage device, so files created or renamed in it are not lost.
+     * Does nothing where directories cannot be opened, as on Windows.
+     */
+    public static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Directories cannot be opened
+        }
+    }
+
+    private static boolean hasContent(Path file, byte[] content) throws IOException {
+        // The size tells most changed files apart without reading them
+        try {
+            if (Files.size(file) != content.length) return false;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        return Arrays.equals(Files.readAllBytes(file), content);
+    }
+
     public static void makeDirs(String path) {
         File f = new File(path);
         f.mkdirs();
@@ -0,0 +1,13 @@
+package jnorm.core;
+
+/**
+ * When written output files are forced to the storage device.
+ */
+public enum FsyncPolicy {
+    // Left to the operating system
+    NONE,
+    // Every file before it is closed, or renamed into place
+    PER_FILE,
+    // All written files once, before the normalizer returns
+    AT_END
+}
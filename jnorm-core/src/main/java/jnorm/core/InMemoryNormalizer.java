@@ -0,0 +1,72 @@
+package jnorm.core;
+
+import jnorm.core.model.JimpleClass;
+import jnorm.core.model.NormalizationStatistics;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Normalizes class files that are held in memory and hands the normalized Jimple of every class to a callback,
+ * without reading from or writing to the filesystem.
+ * <p>
+ * Soot keeps its state in globals, so runs are serialized with all other runs through {@link SootHandler#SOOT_LOCK}.
+ * The callback is called on the thread that started the run.
+ */
+public class InMemoryNormalizer {
+    private final NormalizerOptions options;
+    private NormalizationStatistics statistics = new NormalizationStatistics();
+
+    public InMemoryNormalizer(NormalizerOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * @param classFiles class file contents by class name, either fully qualified or as path of the class file
+     * @param consumer   receives the normalized Jimple of every class
+     */
+    public void normalize(Map<String, byte[]> classFiles, Consumer<JimpleClass> consumer) {
+        Map<String, Supplier<InputStream>> classFileStreams = new LinkedHashMap<>();
+        classFiles.forEach((name, bytes) -> classFileStreams.put(name, () -> new ByteArrayInputStream(bytes)));
+        normalizeStreams(classFileStreams, consumer);
+    }
+
+    /**
+     * @param classFiles suppliers of the class file contents by class name, either fully qualified or as path of the
+     *                   class file. Every supplier must return a new stream, as a class may be read more than once
+     * @param consumer   receives the normalized Jimple of every class
+     */
+    public void normalizeStreams(Map<String, Supplier<InputStream>> classFiles, Consumer<JimpleClass> consumer) {
+        Map<String, Supplier<InputStream>> classFilesByName = new LinkedHashMap<>();
+        classFiles.forEach((name, classFile) -> classFilesByName.put(toClassName(name), classFile));
+
+        synchronized (SootHandler.SOOT_LOCK) {
+            statistics = new NormalizationStatistics();
+            SootHandler sh = new SootHandler(options, statistics);
+            sh.loadClasses(classFilesByName);
+
+            JimplePostProcessor postProcessor = new JimplePostProcessor(options.isApplyPrettyPrint(), options.isApplySimpleRenaming());
+            sh.generateJimpleStrings(jimpleClass -> {
+                statistics.amountOfClasses.increment();
+                consumer.accept(new JimpleClass(postProcessor.process(jimpleClass.getJimple()), jimpleClass.getClassName()));
+            });
+        }
+    }
+
+    /**
+     * Returns the statistics of the last run.
+     */
+    public NormalizationStatistics getStatistics() {
+        return statistics;
+    }
+
+    // a/b/C.class -> a.b.C
+    private static String toClassName(String name) {
+        if (name.endsWith(".class")) name = name.substring(0, name.length() - ".class".length());
+        return name.replace('/', '.');
+    }
+}
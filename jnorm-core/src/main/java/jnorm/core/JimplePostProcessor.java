@@ -0,0 +1,163 @@
+package jnorm.core;
+
+/**
+ * Applies the pretty-printing of {@link PrettyPrinter} and the renaming of {@link Renamer} in a single scan
+ * over the printed class, without regular expressions. The output is identical to running the regex based
+ * implementations one after another.
+ * <p>
+ * Pretty-printing removes leading and trailing whitespace of the whole class and replaces every whitespace run
+ * containing a line break by a single {@code \n}. Whitespace that borders one of the additional line terminators
+ * known to {@link java.util.regex.Pattern} ({@code \u0085}, {@code \u2028}, {@code \u2029}) is removed as well.
+ * <p>
+ * Renaming strips the numbers from labels ({@code label12}), parameters ({@code @parameter0}), stack locals
+ * ({@code $r1_2}) and locals followed by a delimiter ({@code r1_2;}).
+ * <p>
+ * The output buffer is reused between calls, so instances must not be shared between threads.
+ */
+public class JimplePostProcessor {
+    private static final String LABEL = "label";
+    private static final String PARAMETER = "@parameter";
+
+    private final boolean applyPrettyPrint;
+    private final boolean applySimpleRenaming;
+    private final StringBuilder buffer = new StringBuilder();
+
+    public JimplePostProcessor(boolean applyPrettyPrint, boolean applySimpleRenaming) {
+        this.applyPrettyPrint = applyPrettyPrint;
+        this.applySimpleRenaming = applySimpleRenaming;
+    }
+
+    public String process(String content) {
+        if (!applyPrettyPrint && !applySimpleRenaming) return content;
+
+        StringBuilder out = this.buffer;
+        out.setLength(0);
+        out.ensureCapacity(content.length());
+        int length = content.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = content.charAt(i);
+
+            if (isWhitespace(c)) {
+                int runEnd = whitespaceRunEnd(content, i);
+                if (!applyPrettyPrint) {
+                    out.append(content, i, runEnd);
+                } else if (!isRemovedWhitespaceRun(content, i, runEnd)) {
+                    if (containsLineBreak(content, i, runEnd)) {
+                        out.append('\n');
+                    } else {
+                        out.append(content, i, runEnd);
+                    }
+                }
+                i = runEnd;
+                continue;
+            }
+
+            if (applySimpleRenaming) {
+                int matchEnd = -1;
+                if (c == 'l') {
+                    // label12 -> label
+                    matchEnd = digitsAfterPrefix(content, i, LABEL);
+                    if (matchEnd > 0) out.append(LABEL);
+                } else if (c == '@') {
+                    // @parameter0 -> @parameter
+                    matchEnd = digitsAfterPrefix(content, i, PARAMETER);
+                    if (matchEnd > 0) out.append(PARAMETER);
+                } else if (c == '$' && i + 2 < length && isLowerCaseLetter(content.charAt(i + 1)) && isDigit(content.charAt(i + 2))) {
+                    // $r1_2 -> $r, $r1 -> $r
+                    matchEnd = digitsEnd(content, i + 2);
+                    if (matchEnd + 1 < length && content.charAt(matchEnd) == '_' && isDigit(content.charAt(matchEnd + 1))) {
+                        matchEnd = digitsEnd(content, matchEnd + 1);
+                    }
+                    out.append('$').append(content.charAt(i + 1));
+                }
+
+                if (matchEnd < 0 && isLowerCaseLetter(c) && i + 1 < length && isDigit(content.charAt(i + 1))) {
+                    // r1_2; -> r; and r1; -> r; the delimiter itself is kept
+                    int digitsEnd = digitsEnd(content, i + 1);
+                    int suffixEnd = digitsEnd;
+                    if (digitsEnd + 1 < length && content.charAt(digitsEnd) == '_' && isDigit(content.charAt(digitsEnd + 1))) {
+                        suffixEnd = digitsEnd(content, digitsEnd + 1);
+                    }
+                    if (isDelimiter(content, suffixEnd)) {
+                        out.append(c);
+                        matchEnd = suffixEnd;
+                    }
+                }
+
+                if (matchEnd > 0) {
+                    i = matchEnd;
+                    continue;
+                }
+            }
+
+            out.append(c);
+            i++;
+        }
+
+        return out.toString();
+    }
+
+    // Returns the end of the digits following the prefix at the given index, or -1 if there are none
+    private static int digitsAfterPrefix(String content, int index, String prefix) {
+        int digitsStart = index + prefix.length();
+        if (digitsStart >= content.length()) return -1;
+        if (!content.startsWith(prefix, index)) return -1;
+        if (!isDigit(content.charAt(digitsStart))) return -1;
+        return digitsEnd(content, digitsStart);
+    }
+
+    private static int digitsEnd(String content, int index) {
+        while (index < content.length() && isDigit(content.charAt(index))) index++;
+        return index;
+    }
+
+    // Checks whether the (pretty-printed) character at the given index ends a local name
+    private boolean isDelimiter(String content, int index) {
+        if (index >= content.length()) return false;
+        char c = content.charAt(index);
+        if (!isWhitespace(c)) {
+            return c == '.' || c == '+' || c == ')' || c == ';' || c == ']' || c == '[' || c == ',';
+        }
+        // the whitespace run is kept or compacted to a line break, unless pretty-printing removes it
+        return !applyPrettyPrint || !isRemovedWhitespaceRun(content, index, whitespaceRunEnd(content, index));
+    }
+
+    private static int whitespaceRunEnd(String content, int index) {
+        while (index < content.length() && isWhitespace(content.charAt(index))) index++;
+        return index;
+    }
+
+    // Whitespace at the beginning or end of the content, or next to another line terminator is removed completely
+    private static boolean isRemovedWhitespaceRun(String content, int start, int end) {
+        if (start == 0 || end == content.length()) return true;
+        return isOtherLineTerminator(content.charAt(start - 1)) || isOtherLineTerminator(content.charAt(end));
+    }
+
+    private static boolean containsLineBreak(String content, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = content.charAt(i);
+            if (c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    // Same characters as \s in java.util.regex.Pattern
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // Line terminators of java.util.regex.Pattern which are not matched by \s
+    private static boolean isOtherLineTerminator(char c) {
+        return c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLowerCaseLetter(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+}
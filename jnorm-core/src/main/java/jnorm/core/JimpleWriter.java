@@ -0,0 +1,417 @@
+package jnorm.core;
+
+import jnorm.core.helpers.AsyncWriter;
+import jnorm.core.helpers.NormalizationEvents;
+import jnorm.core.helpers.ThreadAllocation;
+import jnorm.core.model.JimpleClass;
+import jnorm.core.model.NormalizationStatistics;
+import jnorm.core.model.PassStatistics;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Pretty-prints, renames and writes printed classes to the output, which is either a directory or, for outputs ending
+ * with .zip or .jar, a single archive written through one buffered stream. Files are placed by the {@link OutputLayout}.
+ * With a parallelism above 1 the classes are processed on a fork-join pool, each file only depends on its own class,
+ * so the file contents are the same as in a sequential run. The entries of an archive are written as soon as all classes
+ * handed to the writer before them are written, so they keep the order the classes were handed over in and do not depend
+ * on which class finished first either. Write failures are collected and reported once in {@link #finish()}.
+ * <p>
+ * When skipping unchanged files, files in an output directory that already have the written content are left untouched
+ * and changed files are replaced atomically.
+ * <p>
+ * With I/O threads, the encoded files are handed to an {@link AsyncWriter} and written while the next classes are
+ * processed. {@link #flush()} and {@link #finish()} wait for these writes as well.
+ */
+public class JimpleWriter {
+    // Entries get a fixed time, so equal output gives equal archives
+    private static final long ARCHIVE_ENTRY_TIME = 315532800000L;
+    private static final int IO_QUEUE_CAPACITY_PER_THREAD = 16;
+
+    private final String output;
+    private final OutputLayout layout;
+    private final ZipOutputStream archive;
+    // Archive entries that finished before an entry handed over earlier, by the order they were handed over in
+    private final Map<Long, ArchiveEntry> completedEntries = new HashMap<>();
+    private final AtomicLong submittedEntries = new AtomicLong();
+    // Guarded by completedEntries
+    private long writtenEntries;
+    private final boolean skipUnchanged;
+    private final FsyncPolicy fsyncPolicy;
+    private final AsyncWriter asyncWriter;
+    // The post-processor reuses its buffer, so every thread gets its own
+    private final ThreadLocal<JimplePostProcessor> postProcessor;
+    private final ForkJoinPool pool;
+    // Bounds the amount of classes waiting for the pool, so the printed classes do not pile up in memory
+    private final Semaphore pendingClasses;
+    private final int maxPendingClasses;
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger amountOfClasses = new AtomicInteger();
+    private final AtomicInteger writtenFiles = new AtomicInteger();
+    private final AtomicInteger skippedFiles = new AtomicInteger();
+    // Classes per group and package, which decide on the shards of the package layout
+    private final Map<String, Set<String>> classesPerPackage = new ConcurrentHashMap<>();
+    // Paths of the classes per group and package, placed once the first class of the package is written
+    private final Map<String, Map<String, String>> packagePaths = new ConcurrentHashMap<>();
+    private final Set<Path> createdDirs = ConcurrentHashMap.newKeySet();
+    // Written files that are forced to the storage device at the end
+    private final Queue<Path> unsyncedFiles = new ConcurrentLinkedQueue<>();
+    // Directories with created or renamed entries that are forced to the storage device at the end
+    private final Set<Path> unsyncedDirs = ConcurrentHashMap.newKeySet();
+    // The directory that holds the entry of the output, the last one that is synced
+    private final Path outputParent;
+    // Null unless pass timing is enabled
+    private PassStatistics postProcessTiming;
+    private PassStatistics writeTiming;
+
+    public JimpleWriter(String outputDir, boolean applyPrettyPrint, boolean applySimpleRenaming, int parallelism) {
+        this(outputDir, OutputLayout.FLAT, applyPrettyPrint, applySimpleRenaming, parallelism);
+    }
+
+    public JimpleWriter(String output, OutputLayout layout, boolean applyPrettyPrint, boolean applySimpleRenaming, int parallelism) {
+        this(output, layout, applyPrettyPrint, applySimpleRenaming, parallelism, false, 0, FsyncPolicy.NONE);
+    }
+
+    /**
+     * @param skipUnchanged leave files of an output directory untouched if they already have the written content
+     * @param ioThreads     amount of threads that write the files, values < 1 write them on the processing threads
+     */
+    public JimpleWriter(String output, OutputLayout layout, boolean applyPrettyPrint, boolean applySimpleRenaming, int parallelism,
+                        boolean skipUnchanged, int ioThreads, FsyncPolicy fsyncPolicy) {
+        this.output = output;
+        this.layout = layout;
+        this.skipUnchanged = skipUnchanged;
+        this.fsyncPolicy = fsyncPolicy;
+        this.outputParent = Paths.get(output).toAbsolutePath().getParent();
+        this.postProcessor = ThreadLocal.withInitial(() -> new JimplePostProcessor(applyPrettyPrint, applySimpleRenaming));
+        if (isArchive(output)) {
+            try {
+                Path archivePath = Paths.get(output).toAbsolutePath();
+                Files.createDirectories(archivePath.getParent());
+                this.archive = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(archivePath), 1 << 16));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error while creating the output archive " + output, e);
+            }
+        } else {
+            this.archive = null;
+        }
+        if (parallelism > 1) {
+            this.pool = new ForkJoinPool(parallelism);
+            this.maxPendingClasses = parallelism * 2;
+            this.pendingClasses = new Semaphore(maxPendingClasses);
+        } else {
+            this.pool = null;
+            this.maxPendingClasses = 0;
+            this.pendingClasses = null;
+        }
+        if (ioThreads > 0) {
+            // Entries of an archive go through one stream, more threads would not write them faster
+            int writerThreads = archive != null ? 1 : ioThreads;
+            this.asyncWriter = new AsyncWriter(writerThreads, writerThreads * IO_QUEUE_CAPACITY_PER_THREAD, "jnorm-writer");
+        } else {
+            this.asyncWriter = null;
+        }
+    }
+
+    /**
+     * Records the time and allocations of post-processing and writing, if pass timing is enabled for the statistics.
+     */
+    public void setStatistics(NormalizationStatistics statistics) {
+        this.postProcessTiming = statistics.getPass("postProcess");
+        this.writeTiming = statistics.getPass("write");
+    }
+
+    public static boolean isArchive(String output) {
+        String lowerCaseOutput = output.toLowerCase(Locale.ROOT);
+        return lowerCaseOutput.endsWith(".zip") || lowerCaseOutput.endsWith(".jar");
+    }
+
+    /**
+     * Counts a class that is going to be written to the group, only needed for package layouts with bounded directories.
+     * All classes of a package have to be counted before the first of them is written.
+     */
+    public void countClass(String group, String className) {
+        if (layout.getMaxFilesPerDirectory() < 1) return;
+        classesPerPackage.computeIfAbsent(getPackageKey(className, group), key -> ConcurrentHashMap.newKeySet()).add(className);
+    }
+
+    public void write(JimpleClass jimpleClass) {
+        write(jimpleClass, "", null);
+    }
+
+    /**
+     * @param group       directory relative to the output the class is written into, empty for the output itself
+     * @param onWritten   receives the class with the written Jimple once it is written, may be null
+     */
+    public void write(JimpleClass jimpleClass, String group, Consumer<JimpleClass> onWritten) {
+        amountOfClasses.incrementAndGet();
+        long sequence = submittedEntries.getAndIncrement();
+        if (pool == null) {
+            process(jimpleClass, group, onWritten, sequence);
+            return;
+        }
+
+        pendingClasses.acquireUninterruptibly();
+        pool.execute(() -> {
+            try {
+                process(jimpleClass, group, onWritten, sequence);
+            } finally {
+                pendingClasses.release();
+            }
+        });
+    }
+
+    /**
+     * Writes an already post-processed Jimple file of the class, e.g. one restored from a cache.
+     */
+    public void copy(String className, String group, Path jimpleFile) {
+        amountOfClasses.incrementAndGet();
+        long sequence = submittedEntries.getAndIncrement();
+        String path = getPath(className, group);
+        try {
+            output(path, Files.readAllBytes(jimpleFile), null, sequence);
+        } catch (IOException e) {
+            failures.add(describe(path) + ": " + e);
+            addArchiveEntry(sequence, null);
+        }
+    }
+
+    /**
+     * Waits until all classes handed to the writer so far are written.
+     */
+    public void flush() {
+        if (pool != null) {
+            pendingClasses.acquireUninterruptibly(maxPendingClasses);
+            pendingClasses.release(maxPendingClasses);
+        }
+        if (asyncWriter != null) asyncWriter.flush();
+    }
+
+    /**
+     * Waits until all classes are written, closes the archive and reports the failed writes.
+     */
+    public void finish() {
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the output to be written", e);
+            }
+        }
+        // The files are only known once they are written
+        if (asyncWriter != null) asyncWriter.flush();
+        for (Path file : unsyncedFiles) {
+            output(() -> {
+                try {
+                    FileHandler.sync(file);
+                } catch (IOException e) {
+                    failures.add(file + ": " + e);
+                }
+            });
+        }
+        if (asyncWriter != null) asyncWriter.close();
+        for (Path dir : unsyncedDirs) {
+            try {
+                FileHandler.syncDirectory(dir);
+            } catch (IOException e) {
+                failures.add(dir + ": " + e);
+            }
+        }
+        if (archive != null) {
+            try {
+                archive.close();
+                if (fsyncPolicy != FsyncPolicy.NONE) {
+                    FileHandler.sync(Paths.get(output));
+                    FileHandler.syncDirectory(outputParent);
+                }
+            } catch (IOException e) {
+                failures.add(output + ": " + e);
+            }
+        }
+
+        if (failures.isEmpty()) return;
+        System.err.println("Error while writing " + failures.size() + " of " + amountOfClasses.get() + " files:");
+        failures.forEach(failure -> System.err.println("  " + failure));
+    }
+
+    public int getWrittenFiles() {
+        return writtenFiles.get();
+    }
+
+    public int getSkippedFiles() {
+        return skippedFiles.get();
+    }
+
+    public List<String> getFailures() {
+        return new ArrayList<>(failures);
+    }
+
+    private void process(JimpleClass jimpleClass, String group, Consumer<JimpleClass> onWritten, long sequence) {
+        String path = getPath(jimpleClass.getClassName(), group);
+        JimpleClass writtenClass;
+        Object event = NormalizationEvents.beginPostProcess();
+        long start = System.nanoTime();
+        long allocated = ThreadAllocation.allocatedBytes();
+        try {
+            writtenClass = new JimpleClass(postProcessor.get().process(jimpleClass.getJimple()), jimpleClass.getClassName());
+        } catch (RuntimeException e) {
+            failures.add(describe(path) + ": " + e);
+            addArchiveEntry(sequence, null);
+            return;
+        } finally {
+            if (postProcessTiming != null) postProcessTiming.record(start, allocated);
+            if (event != null) NormalizationEvents.commitPostProcess(event, jimpleClass.getClassName());
+        }
+        output(path, writtenClass.getJimple().getBytes(StandardCharsets.UTF_8),
+                onWritten != null ? () -> onWritten.accept(writtenClass) : null, sequence);
+    }
+
+    private void output(String path, byte[] content, Runnable onWritten, long sequence) {
+        output(() -> {
+            Object event = NormalizationEvents.beginWrite();
+            long start = System.nanoTime();
+            long allocated = ThreadAllocation.allocatedBytes();
+            boolean written = false;
+            try {
+                written = writeOutput(path, content, sequence);
+                if (onWritten != null) onWritten.run();
+            } catch (IOException | RuntimeException e) {
+                failures.add(describe(path) + ": " + e);
+            } finally {
+                if (writeTiming != null) writeTiming.record(start, allocated);
+                if (event != null) NormalizationEvents.commitWrite(event, describe(path), content.length, written);
+            }
+        });
+    }
+
+    private void output(Runnable write) {
+        if (asyncWriter != null) {
+            asyncWriter.submit(write);
+        } else {
+            write.run();
+        }
+    }
+
+    private String describe(String path) {
+        return archive == null ? output + "/" + path : path;
+    }
+
+    private String getPath(String className, String group) {
+        String path = null;
+        if (layout.getMaxFilesPerDirectory() > 0) {
+            Map<String, String> paths = packagePaths.computeIfAbsent(getPackageKey(className, group),
+                    key -> layout.getPaths(classesPerPackage.getOrDefault(key, Collections.emptySet())));
+            path = paths.get(className);
+        }
+        // Classes that were not counted are not sharded
+        if (path == null) path = layout.getPath(className);
+        return group.isEmpty() ? path : group + "/" + path;
+    }
+
+    private static String getPackageKey(String className, String group) {
+        return group + "/" + OutputLayout.getPackage(className);
+    }
+
+    // Returns false if the file was unchanged and not written
+    private boolean writeOutput(String path, byte[] content, long sequence) throws IOException {
+        if (archive != null) {
+            addArchiveEntry(sequence, new ArchiveEntry(path, content));
+            writtenFiles.incrementAndGet();
+            return true;
+        }
+
+        Path target = Paths.get(output, path);
+        createParentDirs(target);
+        boolean sync = fsyncPolicy == FsyncPolicy.PER_FILE;
+        if (!skipUnchanged) {
+            FileHandler.writeFile(content, target, sync);
+            if (sync) FileHandler.syncDirectory(target.getParent());
+        } else if (!FileHandler.writeFileIfChanged(content, target, sync)) {
+            skippedFiles.incrementAndGet();
+            return false;
+        }
+        writtenFiles.incrementAndGet();
+        if (fsyncPolicy == FsyncPolicy.AT_END) unsyncedFiles.add(target);
+        return true;
+    }
+
+    private void createParentDirs(Path file) throws IOException {
+        Path parent = file.getParent();
+        if (parent == null || createdDirs.contains(parent)) return;
+        Files.createDirectories(parent);
+        if (!createdDirs.add(parent) || fsyncPolicy == FsyncPolicy.NONE) return;
+        // Directories that may have been created hold their entries in the directories above, up to the output's parent
+        for (Path dir = parent.toAbsolutePath(); dir != null; dir = dir.getParent()) {
+            if (fsyncPolicy == FsyncPolicy.PER_FILE) {
+                FileHandler.syncDirectory(dir);
+            } else {
+                unsyncedDirs.add(dir);
+            }
+            if (dir.equals(outputParent)) break;
+        }
+    }
+
+    /**
+     * Writes the entry, and the entries that finished before it and were only waiting for it, to the archive.
+     *
+     * @param entry null for a class that failed, so the entries after it are not held back
+     */
+    private void addArchiveEntry(long sequence, ArchiveEntry entry) {
+        if (archive == null) return;
+        if (entry == null) entry = ArchiveEntry.FAILED;
+        synchronized (completedEntries) {
+            if (sequence != writtenEntries) {
+                completedEntries.put(sequence, entry);
+                return;
+            }
+            while (entry != null) {
+                writtenEntries++;
+                if (entry != ArchiveEntry.FAILED) writeArchiveEntry(entry);
+                entry = completedEntries.remove(writtenEntries);
+            }
+        }
+    }
+
+    private void writeArchiveEntry(ArchiveEntry archiveEntry) {
+        ZipEntry entry = new ZipEntry(archiveEntry.path);
+        entry.setTime(ARCHIVE_ENTRY_TIME);
+        try {
+            archive.putNextEntry(entry);
+            archive.write(archiveEntry.content);
+            archive.closeEntry();
+        } catch (IOException e) {
+            failures.add(archiveEntry.path + ": " + e);
+        }
+    }
+
+    private static class ArchiveEntry {
+        static final ArchiveEntry FAILED = new ArchiveEntry(null, null);
+
+        final String path;
+        final byte[] content;
+
+        ArchiveEntry(String path, byte[] content) {
+            this.path = path;
+            this.content = content;
+        }
+    }
+}
@@ -7,7 +7,6 @@ import soot.toolkits.scalar.UnusedLocalEliminator;
 import soot.util.Chain;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class LocalNormalizer {
 
@@ -20,7 +19,7 @@ public class LocalNormalizer {
     }
 
     private void standardizeLocalsSimple(Body body) {
-        List<Local> renamedLocals = new ArrayList<>();
+        Set<Local> renamedLocals = Collections.newSetFromMap(new IdentityHashMap<>());
         Chain<Unit> unitChain = body.getUnits();
         int localCounter = 0;
 
@@ -30,10 +29,9 @@ public class LocalNormalizer {
                 Value def = defBox.getValue();
                 if (!(def instanceof Local)) continue;
                 Local defLocal = (Local) def;
-                if(renamedLocals.contains(defLocal)) continue;
+                if (!renamedLocals.add(defLocal)) continue;
 
                 defLocal.setName("v" + localCounter);
-                renamedLocals.add(defLocal);
                 localCounter++;
             }
         }
@@ -47,7 +45,7 @@ public class LocalNormalizer {
     }
 
     private void standardizeLocals(Body body) {
-        List<Local> renamedLocals = new ArrayList<>();
+        Set<Local> renamedLocals = Collections.newSetFromMap(new IdentityHashMap<>());
         Chain<Unit> unitChain = body.getUnits();
         Map<Character, Integer> localCounters = new HashMap<>();
 
@@ -57,7 +55,7 @@ public class LocalNormalizer {
                 Value def = defBox.getValue();
                 if (!(def instanceof Local)) continue;
                 Local defLocal = (Local) def;
-                if(renamedLocals.contains(defLocal)) continue;
+                if (!renamedLocals.add(defLocal)) continue;
                 String localName = defLocal.getName();
 
                 if (localName.startsWith("$")) {
@@ -70,26 +68,44 @@ public class LocalNormalizer {
 
                 defLocal.setName(newLocalName);
                 localCounters.put(localChar, localCounter + 1);
-                renamedLocals.add(defLocal);
             }
         }
     }
 
     // Java 8 -> Java 11
-    private void sortLocals(Body body) {
-        Collection<Local> localCollection = body.getLocals().getElementsUnsorted();
-        List<Local> localList = new ArrayList<>(localCollection);
+    static void sortLocals(Body body) {
+        Chain<Local> localChain = body.getLocals();
+        List<LocalSortKey> sortKeys = new ArrayList<>(localChain.size());
+        // Locals share few types, so every type is only printed once
+        Map<Type, String> typeNames = new HashMap<>();
+        for (Local local : localChain) {
+            sortKeys.add(new LocalSortKey(local, typeNames.computeIfAbsent(local.getType(), Type::toString)));
+        }
 
         // Sort based on type first and then sort based on name
-        localList.sort((o1, o2) -> {
-            int typeComparison = o1.getType().toString().compareTo(o2.getType().toString());
+        sortKeys.sort((o1, o2) -> {
+            int typeComparison = o1.typeName.compareTo(o2.typeName);
             if (typeComparison > 0) return 1;
             if (typeComparison < 0) return -1;
 
-            return o1.getName().compareTo(o2.getName());
+            return o1.name.compareTo(o2.name);
         });
 
-        body.getLocals().clear();
-        body.getLocals().addAll(localList);
+        localChain.clear();
+        for (LocalSortKey sortKey : sortKeys) {
+            localChain.add(sortKey.local);
+        }
+    }
+
+    private static class LocalSortKey {
+        final Local local;
+        final String typeName;
+        final String name;
+
+        LocalSortKey(Local local, String typeName) {
+            this.local = local;
+            this.typeName = typeName;
+            this.name = local.getName();
+        }
     }
 }
@@ -0,0 +1,165 @@
+package jnorm.core;
+
+import jnorm.core.helpers.BuildIdentifier;
+import jnorm.core.helpers.ClassFileReader;
+import jnorm.core.model.ClassFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of normalized classes, keyed by the content of the class files.
+ * <p>
+ * The output of a class also depends on other classes, e.g. on the bridge methods of its outer class or on the
+ * private methods it calls. The key of a class therefore covers the content of all its related classes: the classes
+ * of its nest, the classes it references, the classes that reference it and the supertypes of all of them.
+ * A change to any of them changes the key, so dependent classes are normalized again without tracking them separately.
+ * <p>
+ * Every entry is a directory with the output files of one class, named by class and independent of the output layout.
+ * Entries are staged while the class is written and moved into place once all its files are written.
+ */
+public class NormalizationCache {
+    // Bump when the layout of the entries changes, changes of jNorm itself change the build identifier
+    private static final String CACHE_VERSION = "1";
+
+    private final Path cacheDir;
+    private final String configurationKey;
+    private final Map<String, ClassFile> classFiles;
+    private final Map<String, Set<String>> referrers = new HashMap<>();
+    private final Map<String, Set<String>> nests = new HashMap<>();
+    // Pending entries of the classes that are being written, by key
+    private final Map<String, Path> stagedEntries = new ConcurrentHashMap<>();
+
+    /**
+     * @param configurationKey every option that changes the output, so runs with different options do not share entries
+     * @param classFiles       the class files of the input by class name
+     */
+    public NormalizationCache(String cacheDir, String configurationKey, Map<String, ClassFile> classFiles) {
+        this.cacheDir = Paths.get(cacheDir);
+        // Soot prepends the class path of the running JDK, whose classes the output refers to
+        this.configurationKey = CACHE_VERSION + "/" + BuildIdentifier.get() + "/java-"
+                + System.getProperty("java.specification.version") + "/" + configurationKey;
+        this.classFiles = classFiles;
+
+        for (ClassFile classFile : classFiles.values()) {
+            nests.computeIfAbsent(classFile.getNestHost(), host -> new TreeSet<>()).add(classFile.getClassName());
+            for (String referencedClass : classFile.getReferencedClasses()) {
+                if (!classFiles.containsKey(referencedClass)) continue;
+                referrers.computeIfAbsent(referencedClass, name -> new TreeSet<>()).add(classFile.getClassName());
+            }
+        }
+    }
+
+    public String getKey(String className) {
+        // Classes of a nest share their related classes, so the name tells their entries apart
+        StringBuilder keySource = new StringBuilder(configurationKey).append('\n').append(className);
+        for (String relatedClass : getRelatedClasses(Collections.singleton(className))) {
+            keySource.append('\n').append(relatedClass).append('=').append(classFiles.get(relatedClass).getContentHash());
+        }
+        return ClassFileReader.sha256(keySource.toString());
+    }
+
+    /**
+     * Returns the given classes together with every input class their output may depend on.
+     */
+    public Set<String> getRelatedClasses(Collection<String> classNames) {
+        Set<String> relatedClasses = new TreeSet<>();
+        for (String className : classNames) {
+            ClassFile classFile = classFiles.get(className);
+            relatedClasses.add(className);
+            relatedClasses.addAll(nests.getOrDefault(classFile.getNestHost(), Collections.emptySet()));
+            relatedClasses.addAll(referrers.getOrDefault(className, Collections.emptySet()));
+            for (String referencedClass : classFile.getReferencedClasses()) {
+                if (classFiles.containsKey(referencedClass)) relatedClasses.add(referencedClass);
+            }
+        }
+
+        // Methods are resolved through the supertypes
+        Deque<String> pendingClasses = new ArrayDeque<>(relatedClasses);
+        while (!pendingClasses.isEmpty()) {
+            ClassFile classFile = classFiles.get(pendingClasses.pop());
+            List<String> supertypes = new ArrayList<>(classFile.getInterfaces());
+            if (classFile.getSuperName() != null) supertypes.add(classFile.getSuperName());
+            for (String supertype : supertypes) {
+                if (classFiles.containsKey(supertype) && relatedClasses.add(supertype)) pendingClasses.push(supertype);
+            }
+        }
+        return relatedClasses;
+    }
+
+    /**
+     * Returns the output files of the entry by class name, independent of the output layout.
+     *
+     * @return null if there is no entry for the key
+     */
+    public Map<String, Path> restore(String key) throws IOException {
+        Path entry = getEntry(key);
+        if (!Files.isDirectory(entry)) return null;
+
+        Map<String, Path> outputFiles = new TreeMap<>();
+        try (Stream<Path> files = Files.list(entry)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                outputFiles.put(fileName.substring(0, fileName.length() - ".jimple".length()), file);
+            }
+        }
+        return outputFiles;
+    }
+
+    /**
+     * Adds an output file of a class to the pending entry of the key, which becomes visible with {@link #commit(String)}.
+     */
+    public void stage(String key, String className, String jimple) throws IOException {
+        Path pendingEntry = stagedEntries.computeIfAbsent(key, this::createPendingEntry);
+        FileHandler.writeFile(jimple, pendingEntry.resolve(className + ".jimple").toString());
+    }
+
+    /**
+     * Moves the pending entry of the key into place, also if no output file was staged for it.
+     */
+    public void commit(String key) throws IOException {
+        Path pendingEntry = stagedEntries.remove(key);
+        if (pendingEntry == null) pendingEntry = createPendingEntry(key);
+        Path entry = getEntry(key);
+        try {
+            if (!Files.isDirectory(entry)) Files.move(pendingEntry, entry, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            // Stored concurrently by another run
+        } finally {
+            delete(pendingEntry);
+        }
+    }
+
+    /**
+     * Drops the pending entry of the key, e.g. because an output file of the class could not be written.
+     */
+    public void discard(String key) throws IOException {
+        Path pendingEntry = stagedEntries.remove(key);
+        if (pendingEntry != null) delete(pendingEntry);
+    }
+
+    private Path createPendingEntry(String key) {
+        Path entry = getEntry(key);
+        try {
+            Files.createDirectories(entry.getParent());
+            return Files.createTempDirectory(entry.getParent(), key + ".tmp");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path pendingEntry) throws IOException {
+        if (!Files.isDirectory(pendingEntry)) return;
+        FileHandler.deleteDirectoryContent(pendingEntry.toFile());
+        Files.deleteIfExists(pendingEntry);
+    }
+
+    // Entries are spread over subdirectories by the first two digits of their key
+    private Path getEntry(String key) {
+        return cacheDir.resolve(key.substring(0, 2)).resolve(key);
+    }
+}
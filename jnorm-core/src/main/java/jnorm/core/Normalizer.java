@@ -1,6 +1,8 @@
 package jnorm.core;
 
-import jnorm.core.model.JimpleClass;
+import jnorm.core.helpers.ArchiveReader;
+import jnorm.core.helpers.ClassFileReader;
+import jnorm.core.model.ClassFile;
 import jnorm.core.model.NormalizationStatistics;
 import soot.Scene;
 import soot.SootClass;
@@ -8,13 +10,21 @@ import soot.SourceLocator;
 import soot.baf.BafASMBackend;
 import soot.util.Chain;
 
-import java.io.FileOutputStream;
-import java.io.OutputStream;
-import java.util.ArrayList;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public class Normalizer {
     private final NormalizationStatistics statistics = new NormalizationStatistics();
     String inputDir = "input";
+    // Directories or archives, normalized one after another
+    List<String> inputs;
     String outputDir = "output";
     boolean applyOptimization = false;
     boolean applyNormalization = false;
@@ -23,10 +33,25 @@ public class Normalizer {
     boolean applyPrettyPrint = true;
     boolean applySimpleRenaming = true;
     int renamingWindow = 1;
+    int numThreads = 1;
+    int outputParallelism = 1;
+    String cacheDir = null;
+    OutputLayout outputLayout = OutputLayout.FLAT;
+    boolean skipUnchangedWrites = false;
+    int ioThreads = 0;
+    FsyncPolicy fsyncPolicy = FsyncPolicy.NONE;
+    // Writer of the last run, null before the first run
+    private JimpleWriter writer;
 
     public Normalizer(String inputDir, String outputDir, boolean applyOptimization, boolean applyNormalization,
                       boolean applyAggressiveNormalization, boolean applyStandardization, boolean applyPrettyPrint, boolean applySimpleRenaming, int renamingWindow) {
+        this(inputDir, outputDir, applyOptimization, applyNormalization, applyAggressiveNormalization, applyStandardization, applyPrettyPrint, applySimpleRenaming, renamingWindow, 1);
+    }
+
+    public Normalizer(String inputDir, String outputDir, boolean applyOptimization, boolean applyNormalization,
+                      boolean applyAggressiveNormalization, boolean applyStandardization, boolean applyPrettyPrint, boolean applySimpleRenaming, int renamingWindow, int numThreads) {
         this.inputDir = inputDir;
+        this.inputs = Collections.singletonList(inputDir);
         this.outputDir = outputDir;
         this.applyOptimization = applyOptimization;
         this.applyNormalization = applyNormalization;
@@ -35,38 +60,269 @@ public class Normalizer {
         this.applyPrettyPrint = applyPrettyPrint;
         this.applySimpleRenaming = applySimpleRenaming;
         this.renamingWindow = renamingWindow;
+        this.numThreads = numThreads;
+    }
+
+    public Normalizer(String inputDir, String outputDir, NormalizerOptions options) {
+        this(inputDir, outputDir, options.isApplyOptimization(), options.isApplyNormalization(),
+                options.isApplyAggressiveNormalization(), options.isApplyStandardization(), options.isApplyPrettyPrint(),
+                options.isApplySimpleRenaming(), options.getRenamingWindow(), options.getNumThreads());
+        this.outputParallelism = options.getOutputParallelism();
+        this.cacheDir = options.getCacheDir();
+        this.outputLayout = options.getOutputLayout();
+        this.skipUnchangedWrites = options.isSkipUnchangedWrites();
+        this.ioThreads = options.getIoThreads();
+        this.fsyncPolicy = options.getFsyncPolicy();
+    }
+
+    /**
+     * @param inputs directories or JAR, WAR and ZIP archives. The output of several inputs is grouped into a
+     *               directory per input, named like the input
+     */
+    public Normalizer(List<String> inputs, String outputDir, NormalizerOptions options) {
+        this(inputs.get(0), outputDir, options);
+        this.inputs = new ArrayList<>(inputs);
     }
 
     public void normalize() {
-        FileHandler.makeDirs(outputDir);
-        SootHandler sh = new SootHandler(applyOptimization, applyNormalization, applyAggressiveNormalization, applyStandardization, renamingWindow, statistics);
-        sh.loadDir(inputDir);
-        printJimple(sh);
+        // One writer for all inputs, so an archive output receives the classes of every input
+        JimpleWriter writer = new JimpleWriter(outputDir, outputLayout, applyPrettyPrint, applySimpleRenaming, outputParallelism, skipUnchangedWrites,
+                ioThreads, fsyncPolicy);
+        this.writer = writer;
+        writer.setStatistics(statistics);
+        if (!JimpleWriter.isArchive(outputDir)) FileHandler.makeDirs(outputDir);
+        try {
+            // Soot keeps its state in globals, so runs of all normalizers are serialized
+            synchronized (SootHandler.SOOT_LOCK) {
+                for (String input : inputs) {
+                    String group = inputs.size() > 1 ? Paths.get(input).getFileName().toString() : "";
+                    normalize(input, group, writer);
+                }
+            }
+        } finally {
+            // Barrier for the asynchronous writes, all files are written once normalize returns
+            writer.finish();
+        }
+    }
+
+    private void normalize(String input, String group, JimpleWriter writer) {
+        Path inputPath = Paths.get(input);
+        if (cacheDir == null && !ArchiveReader.isArchive(inputPath)) {
+            SootHandler sh = new SootHandler(applyOptimization, applyNormalization, applyAggressiveNormalization, applyStandardization, renamingWindow, numThreads, statistics);
+            sh.loadDir(input);
+            for (String className : sh.getApplicationClassNames()) {
+                writer.countClass(group, className);
+            }
+            // Classes are written as soon as they are printed, so the output is never held in memory as a whole
+            sh.generateJimpleStrings(jimpleClass -> {
+                statistics.amountOfClasses.increment();
+                writer.write(jimpleClass, group, null);
+            });
+            return;
+        }
+        normalizeClassFiles(readClassFiles(inputPath), group, writer);
+    }
+
+    /**
+     * @param outputParallelism amount of threads that pretty-print, rename and write the printed classes
+     */
+    public void setOutputParallelism(int outputParallelism) {
+        this.outputParallelism = outputParallelism;
     }
 
     public NormalizationStatistics getStatistics() {
         return this.statistics;
     }
 
-    private void printJimple(SootHandler sh) {
-        ArrayList<JimpleClass> jimpleClasses = sh.generateJimpleStrings();
+    /**
+     * Returns the amount of files the last run wrote.
+     */
+    public int getWrittenFiles() {
+        return writer != null ? writer.getWrittenFiles() : 0;
+    }
+
+    /**
+     * Returns the amount of files the last run left untouched, as they already had the written content.
+     */
+    public int getSkippedFiles() {
+        return writer != null ? writer.getSkippedFiles() : 0;
+    }
+
+    /**
+     * Returns the files the last run failed to write, with the reason.
+     */
+    public List<String> getFailures() {
+        return writer != null ? writer.getFailures() : Collections.emptyList();
+    }
+
+    /**
+     * Normalizes class files through the in-memory loader. With a cache, unchanged classes are restored from the cache
+     * and only the changed classes and the classes they depend on are loaded and transformed. Only the output of the
+     * changed classes is written, as the other loaded classes lack their own dependencies.
+     */
+    private void normalizeClassFiles(Map<String, ClassFile> classFiles, String group, JimpleWriter writer) {
+        NormalizationCache cache = cacheDir != null ? new NormalizationCache(cacheDir, getConfigurationKey(), classFiles) : null;
+        Map<String, String> keys = new HashMap<>();
+        Set<String> changedClasses = new TreeSet<>();
+        // Files of the classes restored from the cache, by their input class
+        Map<String, Map<String, Path>> restoredClasses = new TreeMap<>();
+        for (ClassFile classFile : classFiles.values()) {
+            String className = classFile.getClassName();
+            if (cache == null) {
+                changedClasses.add(className);
+                continue;
+            }
+            String key = cache.getKey(className);
+            keys.put(className, key);
+            Map<String, Path> outputFiles = restore(cache, key);
+            if (outputFiles != null) {
+                restoredClasses.put(className, outputFiles);
+            } else {
+                changedClasses.add(className);
+            }
+        }
+        if (cache != null) {
+            statistics.amountOfCachedClasses.add(restoredClasses.size());
+        }
+
+        SootHandler sh = null;
+        if (!changedClasses.isEmpty()) {
+            Map<String, Supplier<InputStream>> classFileStreams = new LinkedHashMap<>();
+            classFiles.forEach((name, classFile) -> classFileStreams.put(name, () -> new ByteArrayInputStream(classFile.getContent())));
+            sh = new SootHandler(applyOptimization, applyNormalization, applyAggressiveNormalization, applyStandardization, renamingWindow, numThreads, statistics);
+            sh.loadClasses(classFileStreams, cache != null ? cache.getRelatedClasses(changedClasses) : changedClasses);
+        }
+        Map<String, String> generatedClassOwners = sh != null ? sh.getGeneratedClassOwners() : Collections.emptyMap();
 
-        for (JimpleClass jimpleClass : jimpleClasses) {
-            String jimple = jimpleClass.getJimple();
-            if (applyPrettyPrint) {
-                PrettyPrinter pp = new PrettyPrinter(jimple);
-                jimple = pp.prettyPrint();
+        // Every file of the group is counted before the first one is written, as their names decide on the shards
+        restoredClasses.forEach((className, outputFiles) -> outputFiles.keySet().forEach(
+                outputClass -> writer.countClass(getClassGroup(group, classFiles.get(className)), outputClass)));
+        if (sh != null) {
+            for (String className : sh.getApplicationClassNames()) {
+                String ownerClass = getOwnerClass(className, classFiles, generatedClassOwners);
+                if (ownerClass == null) {
+                    writer.countClass(group, className);
+                } else if (changedClasses.contains(ownerClass)) {
+                    writer.countClass(getClassGroup(group, classFiles.get(ownerClass)), className);
+                }
             }
+        }
+
+        restoredClasses.forEach((className, outputFiles) -> {
+            String classGroup = getClassGroup(group, classFiles.get(className));
+            statistics.amountOfClasses.add(outputFiles.size());
+            outputFiles.forEach((outputClass, file) -> writer.copy(outputClass, classGroup, file));
+        });
+        if (sh == null) return;
 
-            if (applySimpleRenaming) {
-                Renamer re = new Renamer(jimple);
-                jimple = re.rename();
+        // A class is only cached if all of its files are written
+        Map<String, AtomicInteger> pendingFiles = new ConcurrentHashMap<>();
+        Set<String> failedClasses = ConcurrentHashMap.newKeySet();
+        sh.generateJimpleStrings(jimpleClass -> {
+            String ownerClass = getOwnerClass(jimpleClass.getClassName(), classFiles, generatedClassOwners);
+            if (ownerClass != null && !changedClasses.contains(ownerClass)) return;
+            statistics.amountOfClasses.increment();
+            if (ownerClass == null) {
+                writer.write(jimpleClass, group, null);
+                return;
             }
 
-            FileHandler.generateFileFromString(jimple, String.format("%s/%s.jimple", outputDir, jimpleClass.getClassName()));
+            String classGroup = getClassGroup(group, classFiles.get(ownerClass));
+            if (cache == null) {
+                writer.write(jimpleClass, classGroup, null);
+                return;
+            }
+            pendingFiles.computeIfAbsent(ownerClass, name -> new AtomicInteger()).incrementAndGet();
+            writer.write(jimpleClass, classGroup, written -> {
+                try {
+                    cache.stage(keys.get(ownerClass), written.getClassName(), written.getJimple());
+                    pendingFiles.get(ownerClass).decrementAndGet();
+                } catch (IOException | UncheckedIOException e) {
+                    System.err.println("Error while caching " + written.getClassName() + ": " + e.getMessage());
+                    failedClasses.add(ownerClass);
+                }
+            });
+        });
+        if (cache == null) return;
+
+        writer.flush();
+        for (String className : changedClasses) {
+            AtomicInteger pending = pendingFiles.get(className);
+            boolean complete = !failedClasses.contains(className) && (pending == null || pending.get() == 0);
+            try {
+                if (complete) {
+                    cache.commit(keys.get(className));
+                } else {
+                    cache.discard(keys.get(className));
+                }
+            } catch (IOException e) {
+                System.err.println("Error while caching " + className + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Classes of nested archives are grouped into a directory per nested archive
+    private static String getClassGroup(String group, ClassFile classFile) {
+        if (classFile.getArchivePath() == null) return group;
+        String archiveDir = classFile.getArchivePath().replace("!/", "/");
+        return group.isEmpty() ? archiveDir : group + "/" + archiveDir;
+    }
+
+    // Null if the class is not cached
+    private static Map<String, Path> restore(NormalizationCache cache, String key) {
+        try {
+            return cache.restore(key);
+        } catch (IOException e) {
+            System.err.println("Error while restoring from the cache: " + e.getMessage());
+            return null;
         }
     }
 
+    private Map<String, ClassFile> readClassFiles(Path input) {
+        Map<String, ClassFile> classFiles = new TreeMap<>();
+        try {
+            if (ArchiveReader.isArchive(input)) {
+                ArchiveReader.readClassFiles(input, (archivePath, content) -> addClassFile(classFiles, ClassFileReader.read(content, archivePath)));
+                return classFiles;
+            }
+
+            try (Stream<Path> paths = Files.walk(input)) {
+                for (Path path : (Iterable<Path>) paths::iterator) {
+                    String fileName = path.getFileName().toString();
+                    if (!fileName.endsWith(".class") || fileName.equals("module-info.class")) continue;
+                    addClassFile(classFiles, ClassFileReader.read(Files.readAllBytes(path)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while reading the input classes of " + input, e);
+        }
+        return classFiles;
+    }
+
+    // The first class of a name wins, like on a class path
+    private static void addClassFile(Map<String, ClassFile> classFiles, ClassFile classFile) {
+        ClassFile existing = classFiles.putIfAbsent(classFile.getClassName(), classFile);
+        if (existing == null) return;
+        System.err.println("Ignoring duplicate class " + classFile.getClassName()
+                + (classFile.getArchivePath() != null ? " in " + classFile.getArchivePath() : ""));
+    }
+
+    // Every option that changes the output
+    private String getConfigurationKey() {
+        return "o=" + applyOptimization + ",n=" + applyNormalization + ",a=" + applyAggressiveNormalization
+                + ",s=" + applyStandardization + ",p=" + applyPrettyPrint + ",r2=" + applySimpleRenaming
+                + ",r=" + renamingWindow;
+    }
+
+    // Input class a printed class belongs to, classes Soot generates for lambdas and method references belong to the
+    // class they were generated for
+    private static String getOwnerClass(String className, Map<String, ClassFile> classFiles,
+                                        Map<String, String> generatedClassOwners) {
+        if (classFiles.containsKey(className)) return className;
+        String ownerClass = generatedClassOwners.get(className);
+        return ownerClass != null && classFiles.containsKey(ownerClass) ? ownerClass : null;
+    }
+
     private void generateClasses() {
         Chain<SootClass> classes = Scene.v().getClasses();
         int java_version = soot.options.Options.v().java_version();
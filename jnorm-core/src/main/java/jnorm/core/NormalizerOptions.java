@@ -0,0 +1,236 @@
+package jnorm.core;
+
+/**
+ * Configuration of a normalization run. Instances are immutable and created with {@link #builder()}, every option
+ * that is not set keeps the default of the command line.
+ */
+public class NormalizerOptions {
+    private final boolean applyOptimization;
+    private final boolean applyNormalization;
+    private final boolean applyAggressiveNormalization;
+    private final boolean applyStandardization;
+    private final boolean applyPrettyPrint;
+    private final boolean applySimpleRenaming;
+    private final int renamingWindow;
+    private final int numThreads;
+    private final int outputParallelism;
+    private final String cacheDir;
+    private final OutputLayout outputLayout;
+    private final boolean skipUnchangedWrites;
+    private final int ioThreads;
+    private final FsyncPolicy fsyncPolicy;
+
+    private NormalizerOptions(Builder builder) {
+        this.applyOptimization = builder.applyOptimization;
+        this.applyNormalization = builder.applyNormalization;
+        this.applyAggressiveNormalization = builder.applyAggressiveNormalization;
+        this.applyStandardization = builder.applyStandardization;
+        this.applyPrettyPrint = builder.applyPrettyPrint;
+        this.applySimpleRenaming = builder.applySimpleRenaming;
+        this.renamingWindow = builder.renamingWindow;
+        this.numThreads = builder.numThreads;
+        this.outputParallelism = builder.outputParallelism;
+        this.cacheDir = builder.cacheDir;
+        this.outputLayout = builder.outputLayout;
+        this.skipUnchangedWrites = builder.skipUnchangedWrites;
+        this.ioThreads = builder.ioThreads;
+        this.fsyncPolicy = builder.fsyncPolicy;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isApplyOptimization() {
+        return applyOptimization;
+    }
+
+    public boolean isApplyNormalization() {
+        return applyNormalization;
+    }
+
+    public boolean isApplyAggressiveNormalization() {
+        return applyAggressiveNormalization;
+    }
+
+    public boolean isApplyStandardization() {
+        return applyStandardization;
+    }
+
+    public boolean isApplyPrettyPrint() {
+        return applyPrettyPrint;
+    }
+
+    public boolean isApplySimpleRenaming() {
+        return applySimpleRenaming;
+    }
+
+    public int getRenamingWindow() {
+        return renamingWindow;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public int getOutputParallelism() {
+        return outputParallelism;
+    }
+
+    public String getCacheDir() {
+        return cacheDir;
+    }
+
+    public OutputLayout getOutputLayout() {
+        return outputLayout;
+    }
+
+    public boolean isSkipUnchangedWrites() {
+        return skipUnchangedWrites;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    @Override
+    public String toString() {
+        return "NormalizerOptions{" +
+                "applyOptimization=" + applyOptimization +
+                ", applyNormalization=" + applyNormalization +
+                ", applyAggressiveNormalization=" + applyAggressiveNormalization +
+                ", applyStandardization=" + applyStandardization +
+                ", applyPrettyPrint=" + applyPrettyPrint +
+                ", applySimpleRenaming=" + applySimpleRenaming +
+                ", renamingWindow=" + renamingWindow +
+                ", numThreads=" + numThreads +
+                ", outputParallelism=" + outputParallelism +
+                ", cacheDir='" + cacheDir + '\'' +
+                ", outputLayout=" + outputLayout +
+                ", skipUnchangedWrites=" + skipUnchangedWrites +
+                ", ioThreads=" + ioThreads +
+                ", fsyncPolicy=" + fsyncPolicy +
+                '}';
+    }
+
+    public static class Builder {
+        private boolean applyOptimization = false;
+        private boolean applyNormalization = false;
+        private boolean applyAggressiveNormalization = false;
+        private boolean applyStandardization = false;
+        private boolean applyPrettyPrint = false;
+        private boolean applySimpleRenaming = false;
+        private int renamingWindow = -1;
+        private int numThreads = 1;
+        private int outputParallelism = 1;
+        private String cacheDir = null;
+        private OutputLayout outputLayout = OutputLayout.FLAT;
+        private boolean skipUnchangedWrites = false;
+        private int ioThreads = 0;
+        private FsyncPolicy fsyncPolicy = FsyncPolicy.NONE;
+
+        private Builder() {
+        }
+
+        public Builder optimization(boolean applyOptimization) {
+            this.applyOptimization = applyOptimization;
+            return this;
+        }
+
+        public Builder normalization(boolean applyNormalization) {
+            this.applyNormalization = applyNormalization;
+            return this;
+        }
+
+        public Builder aggressiveNormalization(boolean applyAggressiveNormalization) {
+            this.applyAggressiveNormalization = applyAggressiveNormalization;
+            return this;
+        }
+
+        public Builder standardization(boolean applyStandardization) {
+            this.applyStandardization = applyStandardization;
+            return this;
+        }
+
+        public Builder prettyPrint(boolean applyPrettyPrint) {
+            this.applyPrettyPrint = applyPrettyPrint;
+            return this;
+        }
+
+        public Builder simpleRenaming(boolean applySimpleRenaming) {
+            this.applySimpleRenaming = applySimpleRenaming;
+            return this;
+        }
+
+        /**
+         * @param renamingWindow amount of units before and after a definition that name its local, values < 0 disable renaming
+         */
+        public Builder renamingWindow(int renamingWindow) {
+            this.renamingWindow = renamingWindow;
+            return this;
+        }
+
+        /**
+         * @param numThreads amount of threads Soot uses to transform the classes, values < 1 use all available processors
+         */
+        public Builder threads(int numThreads) {
+            this.numThreads = numThreads;
+            return this;
+        }
+
+        /**
+         * @param outputParallelism amount of threads that pretty-print, rename and write the printed classes
+         */
+        public Builder outputParallelism(int outputParallelism) {
+            this.outputParallelism = outputParallelism;
+            return this;
+        }
+
+        /**
+         * @param cacheDir directory of the {@link NormalizationCache}, null disables caching
+         */
+        public Builder cacheDir(String cacheDir) {
+            this.cacheDir = cacheDir;
+            return this;
+        }
+
+        /**
+         * @param outputLayout where the Jimple files are placed in the output directory or archive
+         */
+        public Builder outputLayout(OutputLayout outputLayout) {
+            this.outputLayout = outputLayout;
+            return this;
+        }
+
+        /**
+         * @param skipUnchangedWrites leave output files that already have the normalized content untouched and replace
+         *                            changed files atomically
+         */
+        public Builder skipUnchangedWrites(boolean skipUnchangedWrites) {
+            this.skipUnchangedWrites = skipUnchangedWrites;
+            return this;
+        }
+
+        /**
+         * @param ioThreads amount of threads that write the output files while the next classes are processed, values < 1
+         *                  write them on the processing threads
+         */
+        public Builder ioThreads(int ioThreads) {
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        public Builder fsyncPolicy(FsyncPolicy fsyncPolicy) {
+            this.fsyncPolicy = fsyncPolicy;
+            return this;
+        }
+
+        public NormalizerOptions build() {
+            return new NormalizerOptions(this);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package jnorm.core;
+
+import java.util.*;
+
+/**
+ * Where the Jimple file of a class is placed, relative to the output.
+ * <p>
+ * The flat layout writes all classes into one directory as {@code <fully qualified name>.jimple}. The package layout
+ * writes every class into the directory of its package as {@code <class name>.jimple}. With a bound on the files per
+ * directory, the classes of larger packages are spread over shard directories by the hash of their name. The amount of
+ * shards is doubled until no shard exceeds the bound. Should the hashes not get there, as too many names share one, the
+ * classes are split into ranges of their sorted names instead.
+ */
+public class OutputLayout {
+    public static final OutputLayout FLAT = new OutputLayout(false, 0);
+
+    private final boolean packageDirectories;
+    private final int maxFilesPerDirectory;
+
+    private OutputLayout(boolean packageDirectories, int maxFilesPerDirectory) {
+        this.packageDirectories = packageDirectories;
+        this.maxFilesPerDirectory = maxFilesPerDirectory;
+    }
+
+    /**
+     * @param maxFilesPerDirectory bound of the files per directory, values < 1 do not bound them
+     */
+    public static OutputLayout packages(int maxFilesPerDirectory) {
+        return new OutputLayout(true, maxFilesPerDirectory);
+    }
+
+    public boolean isPackageDirectories() {
+        return packageDirectories;
+    }
+
+    public int getMaxFilesPerDirectory() {
+        return maxFilesPerDirectory;
+    }
+
+    /**
+     * Returns the path of the Jimple file of a class that is not sharded, with '/' as separator.
+     */
+    public String getPath(String className) {
+        if (!packageDirectories) return className + ".jimple";
+        return getPackageDir(className) + getFileName(className);
+    }
+
+    /**
+     * Returns the paths of the Jimple files of all classes of one package, with '/' as separator.
+     *
+     * @param classesInPackage names of all classes written into the package, as they decide on the shards
+     */
+    public Map<String, String> getPaths(Collection<String> classesInPackage) {
+        Map<String, String> paths = new HashMap<>();
+        if (!packageDirectories || maxFilesPerDirectory < 1 || classesInPackage.size() <= maxFilesPerDirectory) {
+            for (String className : classesInPackage) paths.put(className, getPath(className));
+            return paths;
+        }
+
+        int[] shards = getShards(classesInPackage);
+        int index = 0;
+        for (String className : classesInPackage) {
+            paths.put(className, getPackageDir(className) + String.format("_%x/", shards[index++]) + getFileName(className));
+        }
+        return paths;
+    }
+
+    // Shard of every class, in the order of the classes
+    private int[] getShards(Collection<String> classNames) {
+        int[] hashes = new int[classNames.size()];
+        int index = 0;
+        for (String className : classNames) hashes[index++] = mix(className.hashCode());
+
+        // Doubling stops at twice as many shards as classes, more would mostly stay empty
+        int minShards = (classNames.size() + maxFilesPerDirectory - 1) / maxFilesPerDirectory;
+        for (int shards = Integer.highestOneBit(minShards * 2 - 1); shards / 2 <= classNames.size(); shards *= 2) {
+            int[] classesPerShard = new int[shards];
+            boolean fits = true;
+            for (int hash : hashes) {
+                if (++classesPerShard[hash & (shards - 1)] > maxFilesPerDirectory) {
+                    fits = false;
+                    break;
+                }
+            }
+            if (!fits) continue;
+            for (int i = 0; i < hashes.length; i++) hashes[i] &= shards - 1;
+            return hashes;
+        }
+
+        List<String> sortedNames = new ArrayList<>(classNames);
+        Collections.sort(sortedNames);
+        Map<String, Integer> ranks = new HashMap<>();
+        for (int i = 0; i < sortedNames.size(); i++) ranks.put(sortedNames.get(i), i);
+        index = 0;
+        for (String className : classNames) hashes[index++] = ranks.get(className) / maxFilesPerDirectory;
+        return hashes;
+    }
+
+    private static String getPackageDir(String className) {
+        String packageName = getPackage(className);
+        return packageName.isEmpty() ? "" : packageName.replace('.', '/') + "/";
+    }
+
+    private static String getFileName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1) + ".jimple";
+    }
+
+    public static String getPackage(String className) {
+        int packageEnd = className.lastIndexOf('.');
+        return packageEnd < 0 ? "" : className.substring(0, packageEnd);
+    }
+
+    // Spreads the bits of String.hashCode, whose low bits are similar for similar names
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "OutputLayout{" +
+                "packageDirectories=" + packageDirectories +
+                ", maxFilesPerDirectory=" + maxFilesPerDirectory +
+                '}';
+    }
+}
@@ -1,5 +1,6 @@
 package jnorm.core;
 
+import jnorm.core.helpers.FingerprintUnitPrinter;
 import soot.*;
 import soot.jimple.*;
 import soot.options.Options;
@@ -7,10 +8,13 @@ import soot.toolkits.scalar.UnusedLocalEliminator;
 import soot.util.Chain;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class RenameLocalBodyTransformer extends BodyTransformer {
     static int hashWindow;
+    // Hashes of windows are combined as polynomial over the unit fingerprints, so they can be rolled over the units
+    private static final long WINDOW_BASE = 0x9e3779b97f4a7c15L;
+    // Fingerprint of the positions before the first and after the last unit
+    private static final long OUTSIDE_BODY = 0x632be59bd9b4e019L;
 
     public static void addToSootConfig(int renamingWindow) {
         PackManager.v()
@@ -30,22 +34,49 @@ public class RenameLocalBodyTransformer extends BodyTransformer {
         if (enumValues != null) {
             renameLocals(enumValues.getActiveBody());
         }
-        sortLocals(body);
+        LocalNormalizer.sortLocals(body);
     }
 
     private void renameLocals(Body body) {
         int hashWindow = RenameLocalBodyTransformer.hashWindow;
 
         UnitPatchingChain unitChain = body.getUnits();
-        Body clonedBody = (Body) body.clone();
-        List<Unit> clonedUnitsList = new ArrayList<>(clonedBody.getUnits());
-
         Chain<Local> localChain = body.getLocals();
-        Map<Local, Integer> localHashes = new HashMap<>();
+        Map<Local, Long> localHashes = new HashMap<>();
+        Map<Local, Long> useHashes = new HashMap<>();
+
+        // Name independent fingerprint of every unit, computed once
+        FingerprintUnitPrinter printer = new FingerprintUnitPrinter();
+        long[] fingerprints = new long[unitChain.size()];
+        int unitCount = 0;
+        for (Unit unit : unitChain) {
+            fingerprints[unitCount++] = printer.fingerprint(unit);
+        }
+
+        // Hash of the window around the first unit and the weight of the unit that leaves the window when it moves on
+        int windowSize = 2 * hashWindow + 1;
+        long windowHash = 0;
+        long firstUnitWeight = 1;
+        for (int i = 0; i < windowSize; i++) {
+            windowHash = windowHash * WINDOW_BASE + fingerprintAt(fingerprints, unitCount, i - hashWindow);
+            if (i > 0) firstUnitWeight *= WINDOW_BASE;
+        }
 
         int index = 0;
         for (Unit unit : unitChain) {
-            List<Unit> hashUnits = new ArrayList<>();
+            if (index > 0) {
+                // Move the window one unit on
+                windowHash -= fingerprintAt(fingerprints, unitCount, index - 1 - hashWindow) * firstUnitWeight;
+                windowHash = windowHash * WINDOW_BASE + fingerprintAt(fingerprints, unitCount, index + hashWindow);
+            }
+            index++;
+
+            // Locals defined by identical code are told apart by the windows they are used in
+            for (ValueBox useBox : unit.getUseBoxes()) {
+                Value use = useBox.getValue();
+                if (use instanceof Local) useHashes.merge((Local) use, windowHash, (a, b) -> a * WINDOW_BASE + b);
+            }
+
             Local local = null;
             if (unit instanceof AssignStmt) {
                 AssignStmt assignStmt = (AssignStmt) unit;
@@ -60,36 +91,14 @@ public class RenameLocalBodyTransformer extends BodyTransformer {
             }
 
             if (local == null) continue;
-
-            Unit clonedUnit = clonedUnitsList.get(index);
-            removeLocalNames(clonedUnit);
-            hashUnits.add(clonedUnit);
-            for (int i = 1; i <= hashWindow; i++) {
-                if (index - i >= 0) {
-                    Unit prevUnit = clonedUnitsList.get(index -i);
-                    removeLocalNames(prevUnit);
-                    hashUnits.add(prevUnit);
-                }
-                if (index + i < clonedUnitsList.size()) {
-                    Unit nextUnit = clonedUnitsList.get(index + i);
-                    removeLocalNames(nextUnit);
-                    hashUnits.add(nextUnit);
-                }
-            }
-
-            String hashUnitsString = hashUnits
-                    .stream()
-                    .map(u -> u.toString())
-                    .collect(Collectors.joining(", "));
-
-            localHashes.put(local, Math.abs(hashUnitsString.hashCode()));
-            index++;
+            localHashes.put(local, windowHash);
         }
 
         Map<String, Integer> collisions = new HashMap<>();
         for (Local local : localChain) {
-            Integer localHash = localHashes.get(local);
+            Long localHash = localHashes.get(local);
             if (localHash != null) {
+                localHash = mix(localHash * WINDOW_BASE + useHashes.getOrDefault(local, 0L)) & Long.MAX_VALUE;
                 String oldLocalName = local.getName();
                 String newLocalNamePrefix = oldLocalName.startsWith("$") ? "$" + oldLocalName.charAt(1) : String.valueOf(oldLocalName.charAt(0));
                 String newName = newLocalNamePrefix + localHash;
@@ -100,52 +109,16 @@ public class RenameLocalBodyTransformer extends BodyTransformer {
         }
     }
 
-    private void removeLocalNames (Unit unit) {
-        List<ValueBox> valueBoxes = unit.getUseAndDefBoxes();
-        for (ValueBox vb : valueBoxes) {
-            Value val = vb.getValue();
-            if (val instanceof Local) {
-                vb.setValue(Jimple.v().newLocal("local", RefType.v("java.lang.Object")));
-            }
-            List<ValueBox> innerVBs = val.getUseBoxes();
-            for (ValueBox innerVB : innerVBs) {
-                Value innerVal = innerVB.getValue();
-                if (innerVal instanceof Local) {
-                    innerVB.setValue(Jimple.v().newLocal("local", RefType.v("java.lang.Object")));
-                }
-            }
-        }
-        if (unit instanceof GotoStmt) {
-            GotoStmt gotoStmt = (GotoStmt) unit;
-            gotoStmt.setTarget(Jimple.v().newNopStmt());
-        } else if (unit instanceof IfStmt) {
-            IfStmt ifStmt = (IfStmt) unit;
-            ifStmt.setTarget(Jimple.v().newNopStmt());
-        } else if (unit instanceof SwitchStmt) {
-            SwitchStmt switchStmt = (SwitchStmt) unit;
-            switchStmt.setDefaultTarget(Jimple.v().newNopStmt());
-            List<Unit> targets = switchStmt.getTargets();
-            for (int i = 0; i < targets.size(); i++) {
-                switchStmt.setTarget(i, Jimple.v().newNopStmt());
-            }
-        }
+    private static long fingerprintAt(long[] fingerprints, int unitCount, int index) {
+        if (index < 0 || index >= unitCount) return OUTSIDE_BODY;
+        return fingerprints[index];
     }
 
-    private void sortLocals(Body body) {
-        Collection<Local> localCollection = body.getLocals().getElementsUnsorted();
-        List<Local> localList = new ArrayList<>(localCollection);
-
-        // Sort based on type first and then sort based on name
-        localList.sort((o1, o2) -> {
-            int typeComparison = o1.getType().toString().compareTo(o2.getType().toString());
-            if (typeComparison > 0) return 1;
-            if (typeComparison < 0) return -1;
-
-            return o1.getName().compareTo(o2.getName());
-        });
-
-        body.getLocals().clear();
-        body.getLocals().addAll(localList);
+    // Finalizer of SplitMix64, spreads the window hash over all bits
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
     }
 
 //    private void renameLocals(Body body) {
@@ -1,25 +1,69 @@
 package jnorm.core;
 
+import jnorm.core.helpers.InMemoryClassProvider;
+import jnorm.core.helpers.SootGlobals;
+import jnorm.core.helpers.ThreadAllocation;
+import jnorm.core.helpers.NormalizationEvents;
+import jnorm.core.helpers.TimedBodyTransformer;
 import jnorm.core.model.JimpleClass;
 import jnorm.core.model.NormalizationStatistics;
+import jnorm.core.model.PassStatistics;
 import soot.*;
+import soot.asm.AsmClassProvider;
+import soot.asm.AsmJava9ClassProvider;
 import soot.util.Chain;
 
+import java.io.File;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class SootHandler {
-    static List<SootMethod> syntheticMethods = new ArrayList<>();
-    static List<SootMethod> privateMethods = new ArrayList<>();
+    /**
+     * Soot keeps its state in globals, which every handler resets. Runs have to hold this lock from creating their
+     * handler until the last class is printed, so runs on other threads do not reset the state they work on.
+     */
+    public static final Object SOOT_LOCK = new Object();
+
+    // Concurrent sets, as body transformers run on multiple threads if numThreads != 1
+    static Set<SootMethod> syntheticMethods = ConcurrentHashMap.newKeySet();
+    static Set<SootMethod> privateMethods = ConcurrentHashMap.newKeySet();
     private NormalizationStatistics statistics;
+    private StandardizeSceneTransformer standardizeSceneTransformer;
+    // Null if normalization is not applied
+    private CoreBodyNormalizer coreBodyNormalizer;
+
+    static {
+        SootGlobals.install();
+    }
 
     public SootHandler(boolean applyOptimization, boolean applyNormalization, boolean applyAggressiveNormalization,
                        boolean applyStandardization, int renamingWindow, NormalizationStatistics statistics) {
+        this(applyOptimization, applyNormalization, applyAggressiveNormalization, applyStandardization, renamingWindow, 1, statistics);
+    }
+
+    public SootHandler(NormalizerOptions options, NormalizationStatistics statistics) {
+        this(options.isApplyOptimization(), options.isApplyNormalization(), options.isApplyAggressiveNormalization(),
+                options.isApplyStandardization(), options.getRenamingWindow(), options.getNumThreads(), statistics);
+    }
+
+    /**
+     * @param numThreads amount of threads Soot uses to transform the classes, values < 1 use all available processors
+     */
+    public SootHandler(boolean applyOptimization, boolean applyNormalization, boolean applyAggressiveNormalization,
+                       boolean applyStandardization, int renamingWindow, int numThreads, NormalizationStatistics statistics) {
 
         G.reset();
-        soot.options.Options.v().set_num_threads(1);
+        syntheticMethods.clear();
+        privateMethods.clear();
+        // Bodies of other classes are only read through summaries built before the packs, and class members the
+        // passes look up are not changed by them, so the output does not depend on the amount of threads
+        soot.options.Options.v().set_num_threads(numThreads);
         soot.options.Options.v().set_debug(false);
         soot.options.Options.v().set_debug_resolver(true);
         soot.options.Options.v().set_prepend_classpath(true);
@@ -38,6 +82,7 @@ public class SootHandler {
             // apply normalization
             NormalizeBodyTransformer normalizeBodyTransformer = new NormalizeBodyTransformer(cbn, ln);
             normalizeBodyTransformer.addToSootConfig();
+            coreBodyNormalizer = cbn;
         }
 
         if (applyAggressiveNormalization) {
@@ -69,13 +114,57 @@ public class SootHandler {
         if (applyStandardization) {
             StandardizeBodyTransformer standardizeBodyTransformer = new StandardizeBodyTransformer(ln);
             standardizeBodyTransformer.addToSootConfig();
+            standardizeSceneTransformer = new StandardizeSceneTransformer(ln);
+        }
+
+        // Where JFR events are supported, the transforms are instrumented so a recording sees them
+        if (NormalizationEvents.isSupported()
+                || statistics != null && (statistics.isPassTimingEnabled() || statistics.getProfiler() != null)) {
+            TimedBodyTransformer.instrumentBodyPacks(statistics);
         }
     }
 
     public void loadDir(String filepath) {
         soot.options.Options.v().set_process_dir(Collections.singletonList(filepath));
+        loadAndTransform();
+    }
+
+    /**
+     * Loads the given class files as application classes instead of the classes of a directory.
+     * Classes that are not given are still looked up on the class path.
+     *
+     * @param classFiles suppliers of the class file contents by fully qualified class name
+     */
+    public void loadClasses(Map<String, Supplier<InputStream>> classFiles) {
+        loadClasses(classFiles, classFiles.keySet());
+    }
+
+    /**
+     * Loads the given class files, but only transforms the application classes among them.
+     * The other classes are only read where the application classes refer to them.
+     */
+    public void loadClasses(Map<String, Supplier<InputStream>> classFiles, Collection<String> applicationClasses) {
+        List<ClassProvider> classProviders = new ArrayList<>();
+        classProviders.add(new InMemoryClassProvider(classFiles));
+        // Same providers Soot uses by default for class files, the JDK is on the class path as virtual entry since Java 9
+        List<String> classPath = Arrays.asList(Scene.v().getSootClassPath().split(File.pathSeparator));
+        if (classPath.contains(ModulePathSourceLocator.DUMMY_CLASSPATH_JDK9_FS)) {
+            classProviders.add(new AsmJava9ClassProvider());
+        }
+        classProviders.add(new AsmClassProvider());
+        SourceLocator.v().setClassProviders(classProviders);
+
+        soot.options.Options.v().classes().addAll(applicationClasses);
+        loadAndTransform();
+    }
 
+    private void loadAndTransform() {
+        Object event = NormalizationEvents.beginSceneLoad();
+        long start = System.nanoTime();
+        long allocated = ThreadAllocation.allocatedBytes();
         Scene.v().loadNecessaryClasses();
+        recordPass("loadNecessaryClasses", start, allocated);
+        if (event != null) NormalizationEvents.commitSceneLoad(event, Scene.v().getApplicationClasses().size());
 
         // get private methods before the information is lost for some reason
         for (SootClass sc : Scene.v().getApplicationClasses()) {
@@ -84,39 +173,93 @@ public class SootHandler {
                 privateMethods.add(sm);
             }
         }
+        // Summarize the access$ bridges while their bodies are untransformed, the callers only read the summaries
+        if (coreBodyNormalizer != null) coreBodyNormalizer.analyzeAccessBridges(Scene.v().getApplicationClasses());
 
+        event = NormalizationEvents.beginPacks();
+        start = System.nanoTime();
+        allocated = ThreadAllocation.allocatedBytes();
         PackManager.v().runPacks();
-        this.statistics.amountOfClasses = Scene.v().getApplicationClasses().size();
-        this.statistics.amountOfMethods = Scene.v().getApplicationClasses().stream().mapToInt(c -> c.getMethods().size()).sum();
+        recordPass("runPacks", start, allocated);
+        if (event != null) NormalizationEvents.commitPacks(event, Scene.v().getApplicationClasses().size());
+        if (standardizeSceneTransformer != null) {
+            start = System.nanoTime();
+            allocated = ThreadAllocation.allocatedBytes();
+            standardizeSceneTransformer.transform();
+            recordPass("standardizeScene", start, allocated);
+        }
+        // Added up, as a normalizer may load several inputs one after another
+        this.statistics.amountOfMethods.add(Scene.v().getApplicationClasses().stream().mapToInt(c -> c.getMethods().size()).sum());
+    }
+
+    public List<String> getApplicationClassNames() {
+        List<String> classNames = new ArrayList<>();
+        for (SootClass sc : Scene.v().getApplicationClasses()) {
+            classNames.add(sc.getName());
+        }
+        return classNames;
     }
 
+    /**
+     * Returns the class whose lambda or method reference each generated class implements, by generated class name.
+     */
+    public Map<String, String> getGeneratedClassOwners() {
+        return SootGlobals.getGeneratedClassOwners();
+    }
 
     public ArrayList<JimpleClass> generateJimpleStrings() {
         return this.generateJimpleStrings(new String[]{});
     }
 
     public ArrayList<JimpleClass> generateJimpleStrings(String[] relevantClasses) {
+        ArrayList<JimpleClass> jimpleClasses = new ArrayList<>();
+        generateJimpleStrings(relevantClasses, jimpleClasses::add);
+        return jimpleClasses;
+    }
+
+    public void generateJimpleStrings(Consumer<JimpleClass> consumer) {
+        generateJimpleStrings(new String[]{}, consumer);
+    }
+
+    /**
+     * Prints the application classes one by one and hands each of them to the consumer as soon as it is printed.
+     * Nothing is retained after the consumer returns, so the printed classes do not have to fit into memory at once.
+     */
+    public void generateJimpleStrings(String[] relevantClasses, Consumer<JimpleClass> consumer) {
         Chain<SootClass> classes = Scene.v().getClasses();
+        Set<String> relevantClassNames = new HashSet<>(Arrays.asList(relevantClasses));
         // Remove synthetic methods
         filterSyntheticMethods();
 
-        ArrayList<JimpleClass> jimpleClasses = new ArrayList<>();
         for (SootClass sc : classes) {
             if (!sc.isApplicationClass()) continue;
 
             // remove final keyword from inner classes
             removeFinalKeyword(sc);
 
-            if (relevantClasses.length < 1 || Arrays.asList(relevantClasses).contains(sc.getName())) {
+            if (relevantClassNames.isEmpty() || relevantClassNames.contains(sc.getName())) {
+                Object event = NormalizationEvents.beginPrint();
+                long start = System.nanoTime();
+                long allocated = ThreadAllocation.allocatedBytes();
                 StringWriter stringWriter = new StringWriter();
                 PrintWriter writerOut = new PrintWriter(stringWriter);
                 Printer.v().printTo(sc, writerOut);
                 writerOut.flush();
+                recordPass("print", start, allocated);
+                if (statistics != null && statistics.getProfiler() != null) {
+                    statistics.getProfiler().recordPrint(sc.getName(), System.nanoTime() - start);
+                }
+                if (event != null) NormalizationEvents.commitPrint(event, sc.getName(), stringWriter.getBuffer().length());
 
-                jimpleClasses.add(new JimpleClass(stringWriter.toString(), sc.getName()));
+                consumer.accept(new JimpleClass(stringWriter.toString(), sc.getName()));
             }
         }
-        return jimpleClasses;
+    }
+
+    private void recordPass(String name, long start, long allocated) {
+        if (statistics == null) return;
+        PassStatistics pass = statistics.getPass(name);
+        if (pass != null) pass.record(start, allocated);
     }
 
     private void filterSyntheticMethods() {
@@ -128,8 +271,10 @@ public class SootHandler {
                 if (sm.getDeclaringClass() == null) continue;
 //                if (!sm.getName().equals("sort")) continue;
 
+                // Removing the method detaches it from its class
+                String className = sm.getDeclaringClass().getName();
                 sm.getDeclaringClass().removeMethod(sm);
-                if (this.statistics != null) this.statistics.sortMethod += 1;
+                if (this.statistics != null) this.statistics.count(this.statistics.sortMethod, className);
             } catch (RuntimeException e) {
 //                e.printStackTrace();
             }
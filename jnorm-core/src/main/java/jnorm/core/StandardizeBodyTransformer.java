@@ -2,7 +2,6 @@ package jnorm.core;
 
 import soot.*;
 import soot.options.Options;
-import soot.util.Chain;
 
 import java.util.*;
 
@@ -26,16 +25,8 @@ public class StandardizeBodyTransformer extends BodyTransformer {
 
     @Override
     protected void internalTransform(Body body, String s, Map<String, String> map) {
+        // $values methods are standardized once for all classes by the StandardizeSceneTransformer
         ln.normalize(body);
-        Chain<SootClass> allClasses = Scene.v().getApplicationClasses();
-        for (SootClass sc : allClasses) {
-            List<SootMethod> methods = sc.getMethods();
-            for (SootMethod sm : methods) {
-                if (sm.getName().equals("$values")) {
-                    ln.normalize(sm.getActiveBody());
-                }
-            }
-        }
     }
 
 }
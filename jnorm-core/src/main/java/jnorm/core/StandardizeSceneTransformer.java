@@ -0,0 +1,29 @@
+package jnorm.core;
+
+import soot.*;
+
+import java.util.Map;
+
+/**
+ * Standardizes the $values methods of all application classes once, after the body packs ran.
+ * The body packs do not reach $values methods that are created while normalizing an enum's static initializer,
+ * as these are added to the class after its methods were collected.
+ */
+public class StandardizeSceneTransformer extends SceneTransformer {
+    LocalNormalizer ln;
+
+    public StandardizeSceneTransformer(LocalNormalizer ln) {
+        this.ln = ln;
+    }
+
+    @Override
+    protected void internalTransform(String s, Map<String, String> map) {
+        for (SootClass sc : Scene.v().getApplicationClasses()) {
+            for (SootMethod sm : sc.getMethods()) {
+                if (!sm.getName().equals("$values")) continue;
+                if (!sm.hasActiveBody()) continue;
+                ln.normalize(sm.getActiveBody());
+            }
+        }
+    }
+}
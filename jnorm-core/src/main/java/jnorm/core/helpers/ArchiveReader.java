@@ -0,0 +1,75 @@
+package jnorm.core.helpers;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams the class files out of JAR, WAR and ZIP archives without extracting them. Archives nested in an archive,
+ * like the libraries of Spring Boot and WAR files, are read from the stream of their entry.
+ */
+public class ArchiveReader {
+    private static final String VERSIONED_ENTRY_PREFIX = "META-INF/versions/";
+
+    private ArchiveReader() {
+    }
+
+    public static boolean isArchive(Path path) {
+        if (!Files.isRegularFile(path)) return false;
+        String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return fileName.endsWith(".jar") || fileName.endsWith(".war") || fileName.endsWith(".zip");
+    }
+
+    /**
+     * Hands the content of every class file in the archive to the consumer, together with the path of the nested
+     * archive it was read from. The path is null for classes of the archive itself and joins the entries of archives
+     * nested more than once with "!/".
+     */
+    public static void readClassFiles(Path archive, BiConsumer<String, byte[]> consumer) throws IOException {
+        try (ZipInputStream zipIn = new ZipInputStream(new BufferedInputStream(Files.newInputStream(archive)))) {
+            readClassFiles(zipIn, null, consumer);
+        }
+    }
+
+    private static void readClassFiles(ZipInputStream zipIn, String archivePath, BiConsumer<String, byte[]> consumer) throws IOException {
+        ZipEntry entry;
+        while ((entry = zipIn.getNextEntry()) != null) {
+            if (entry.isDirectory()) continue;
+            String name = entry.getName();
+
+            if (isNestedArchive(name)) {
+                String nestedPath = archivePath == null ? name : archivePath + "!/" + name;
+                // Not closed, as closing it would close the enclosing archive
+                readClassFiles(new ZipInputStream(zipIn), nestedPath, consumer);
+            } else if (isClassFile(name)) {
+                consumer.accept(archivePath, readEntry(zipIn));
+            }
+        }
+    }
+
+    private static boolean isNestedArchive(String name) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        return lowerCaseName.endsWith(".jar") || lowerCaseName.endsWith(".war") || lowerCaseName.endsWith(".zip");
+    }
+
+    // Class files of other Java versions in multi-release JARs and module descriptors are not normalized
+    private static boolean isClassFile(String name) {
+        if (!name.endsWith(".class")) return false;
+        if (name.startsWith(VERSIONED_ENTRY_PREFIX)) return false;
+        return !name.endsWith("module-info.class");
+    }
+
+    static byte[] readEntry(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
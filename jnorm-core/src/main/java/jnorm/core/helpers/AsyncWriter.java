@@ -0,0 +1,120 @@
+package jnorm.core.helpers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs output writes on a small pool of I/O threads, so printing and renaming go on while the disk is busy.
+ * Writes wait in a bounded queue, a full queue blocks the submitting thread until an I/O thread takes a write.
+ * The writes have to handle their own failures.
+ */
+public class AsyncWriter {
+    private static final Runnable STOP = () -> {
+    };
+
+    private final BlockingQueue<Runnable> queue;
+    private final List<Thread> threads = new ArrayList<>();
+    private final Object lock = new Object();
+    // Submitted writes that did not complete yet, guarded by lock
+    private int pendingWrites = 0;
+    private boolean closed = false;
+
+    /**
+     * @param queueCapacity amount of writes that may wait for an I/O thread
+     */
+    public AsyncWriter(int threads, int queueCapacity, String name) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        ThreadFactory threadFactory = IoThreads.newThreadFactory(name);
+        for (int i = 0; i < threads; i++) {
+            Thread thread = threadFactory.newThread(this::drain);
+            this.threads.add(thread);
+            thread.start();
+        }
+    }
+
+    public void submit(Runnable write) {
+        synchronized (lock) {
+            if (closed) throw new IllegalStateException("The writer is closed");
+            pendingWrites++;
+        }
+        put(write);
+    }
+
+    /**
+     * Waits until all writes submitted so far are completed.
+     */
+    public void flush() {
+        boolean interrupted = false;
+        synchronized (lock) {
+            while (pendingWrites > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Completes the submitted writes and stops the I/O threads.
+     */
+    public void close() {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+        }
+        flush();
+        for (int i = 0; i < threads.size(); i++) {
+            put(STOP);
+        }
+
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable write;
+            try {
+                write = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (write == STOP) return;
+
+            try {
+                write.run();
+            } finally {
+                synchronized (lock) {
+                    if (--pendingWrites == 0) lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    // Backpressure must not be lost to an interrupt, else the write would be lost as well
+    private void put(Runnable write) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(write);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
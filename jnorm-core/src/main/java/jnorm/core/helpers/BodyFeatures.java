@@ -0,0 +1,73 @@
+package jnorm.core.helpers;
+
+import soot.Body;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.*;
+
+/**
+ * Features of a body that normalization passes depend on, combined into a bitmap.
+ * The features are derived from method refs and types only, so computing them does not resolve any methods.
+ * A feature may be present although the corresponding pass does not change anything, but a pass never changes
+ * a body that lacks its feature.
+ */
+public class BodyFeatures {
+    public static final int TRAPS = 1;
+    public static final int ENUM_STATIC_INITIALIZER = 1 << 1;
+    public static final int STRING_BUILDER = 1 << 2;
+    public static final int DYNAMIC_INVOKE = 1 << 3;
+    public static final int BUFFER_CALL = 1 << 4;
+    public static final int REQUIRE_NON_NULL = 1 << 5;
+    public static final int CHAR_SEQUENCE_TO_STRING = 1 << 6;
+    public static final int ACCESS_BRIDGE_CALL = 1 << 7;
+
+    private static final String STRINGBUILDER_TYPE = "java.lang.StringBuilder";
+    private static final String OBJECTS_CLASS = "java.util.Objects";
+    private static final String NIO_PACKAGE = "java.nio.";
+
+    private BodyFeatures() {
+    }
+
+    // Features that do not depend on single units
+    public static int of(Body body) {
+        int features = 0;
+        if (!body.getTraps().isEmpty()) features |= TRAPS;
+
+        SootMethod method = body.getMethod();
+        if (method.isStaticInitializer() && method.getDeclaringClass().isEnum()) features |= ENUM_STATIC_INITIALIZER;
+        return features;
+    }
+
+    public static int of(Unit unit) {
+        if (unit instanceof AssignStmt) {
+            Value rhs = ((AssignStmt) unit).getRightOp();
+            if (rhs instanceof NewExpr) {
+                return ((NewExpr) rhs).getBaseType().getClassName().equals(STRINGBUILDER_TYPE) ? STRING_BUILDER : 0;
+            }
+            if (rhs instanceof InvokeExpr) return of((InvokeExpr) rhs);
+        } else if (unit instanceof InvokeStmt) {
+            return of(((InvokeStmt) unit).getInvokeExpr());
+        }
+        return 0;
+    }
+
+    private static int of(InvokeExpr invokeExpr) {
+        if (invokeExpr instanceof DynamicInvokeExpr) return DYNAMIC_INVOKE;
+
+        String name = invokeExpr.getMethodRef().getName();
+        String className = invokeExpr.getMethodRef().getDeclaringClass().getName();
+        if (invokeExpr instanceof VirtualInvokeExpr) {
+            // Same classes as java\.nio\.[\w]+Buffer, which never contain a dot after the package
+            if (className.startsWith(NIO_PACKAGE) && className.endsWith("Buffer")
+                    && className.indexOf('.', NIO_PACKAGE.length()) < 0) return BUFFER_CALL;
+        } else if (invokeExpr instanceof StaticInvokeExpr) {
+            if (name.equals("requireNonNull") && className.equals(OBJECTS_CLASS)) return REQUIRE_NON_NULL;
+            if (name.startsWith("access$")) return ACCESS_BRIDGE_CALL;
+        } else if (invokeExpr instanceof InterfaceInvokeExpr) {
+            // The pass checks the declaring class of the resolved method, which may differ from the one of the ref
+            if (name.equals("toString")) return CHAR_SEQUENCE_TO_STRING;
+        }
+        return 0;
+    }
+}
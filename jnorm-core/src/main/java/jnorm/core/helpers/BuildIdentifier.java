@@ -0,0 +1,102 @@
+package jnorm.core.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Identifies the build of jNorm that runs, so output that is stored across runs can be told apart by the build that
+ * produced it. Made of the version from the manifest, the version of Soot and a hash of the classes of jnorm-core,
+ * which also tells apart builds of the same version.
+ */
+public class BuildIdentifier {
+    private static final String CORE_PACKAGE_PATH = "jnorm/core/";
+    private static final String SOOT_POM_PROPERTIES = "/META-INF/maven/org.soot-oss/soot/pom.properties";
+
+    private static String buildIdentifier;
+
+    private BuildIdentifier() {
+    }
+
+    public static synchronized String get() {
+        if (buildIdentifier == null) {
+            buildIdentifier = BuildIdentifier.class.getPackage().getImplementationVersion()
+                    + "/soot-" + getSootVersion() + "/" + hashCoreClasses();
+        }
+        return buildIdentifier;
+    }
+
+    private static String getSootVersion() {
+        try (InputStream in = soot.G.class.getResourceAsStream(SOOT_POM_PROPERTIES)) {
+            if (in == null) return null;
+            Properties properties = new Properties();
+            properties.load(in);
+            return properties.getProperty("version");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return a hash of the names and contents of the jnorm-core classes, of a directory or of a JAR including its
+     * versioned classes, null if their location is unknown
+     */
+    private static String hashCoreClasses() {
+        CodeSource codeSource = BuildIdentifier.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null) return null;
+        try {
+            Path location = toPath(codeSource.getLocation());
+            StringBuilder hashSource = new StringBuilder();
+            if (Files.isDirectory(location)) {
+                Map<String, Path> classFiles = new TreeMap<>();
+                try (Stream<Path> walk = Files.walk(location)) {
+                    for (Path file : walk.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                        String name = location.relativize(file).toString().replace(File.separatorChar, '/');
+                        if (isCoreEntry(name)) classFiles.put(name, file);
+                    }
+                }
+                for (Map.Entry<String, Path> classFile : classFiles.entrySet()) {
+                    hashSource.append(classFile.getKey()).append('=')
+                            .append(ClassFileReader.sha256(Files.readAllBytes(classFile.getValue()))).append('\n');
+                }
+            } else {
+                try (ZipFile jar = new ZipFile(location.toFile())) {
+                    List<ZipEntry> entries = jar.stream()
+                            .filter(entry -> !entry.isDirectory() && isCoreEntry(entry.getName()))
+                            .sorted(Comparator.comparing(ZipEntry::getName))
+                            .collect(Collectors.toList());
+                    for (ZipEntry entry : entries) {
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            hashSource.append(entry.getName()).append('=')
+                                    .append(ClassFileReader.sha256(ArchiveReader.readEntry(in))).append('\n');
+                        }
+                    }
+                }
+            }
+            return ClassFileReader.sha256(hashSource.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean isCoreEntry(String name) {
+        // Versioned classes are at META-INF/versions/<version>/jnorm/core/
+        return name.startsWith(CORE_PACKAGE_PATH) || name.startsWith("META-INF/versions/") && name.contains("/" + CORE_PACKAGE_PATH);
+    }
+
+    private static Path toPath(URL location) throws URISyntaxException {
+        return Paths.get(location.toURI());
+    }
+}
@@ -0,0 +1,85 @@
+package jnorm.core.helpers;
+
+import jnorm.core.model.ClassFile;
+import org.objectweb.asm.ClassReader;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Reads the name, supertypes and referenced classes of a class file from its constant pool, without loading it
+ * into Soot.
+ */
+public class ClassFileReader {
+    private static final int CONSTANT_CLASS = 7;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ClassFileReader() {
+    }
+
+    public static ClassFile read(byte[] content) {
+        return read(content, null);
+    }
+
+    /**
+     * @param archivePath path of the nested archive the class file was read from, null for classes of the input itself
+     */
+    public static ClassFile read(byte[] content, String archivePath) {
+        ClassReader classReader = new ClassReader(content);
+        String className = toClassName(classReader.getClassName());
+        String superName = classReader.getSuperName() != null ? toClassName(classReader.getSuperName()) : null;
+        List<String> interfaces = new ArrayList<>();
+        for (String interfaceName : classReader.getInterfaces()) {
+            interfaces.add(toClassName(interfaceName));
+        }
+
+        Set<String> referencedClasses = new TreeSet<>();
+        char[] buffer = new char[classReader.getMaxStringLength()];
+        for (int i = 1; i < classReader.getItemCount(); i++) {
+            int item = classReader.getItem(i);
+            // Second slot of long and double constants
+            if (item == 0) continue;
+            if (classReader.readByte(item - 1) != CONSTANT_CLASS) continue;
+
+            String referencedClass = classReader.readUTF8(item, buffer);
+            // Array classes reference their element type
+            if (referencedClass.startsWith("[")) {
+                int elementStart = referencedClass.indexOf('L');
+                if (elementStart < 0) continue;
+                referencedClass = referencedClass.substring(elementStart + 1, referencedClass.length() - 1);
+            }
+            referencedClasses.add(toClassName(referencedClass));
+        }
+        referencedClasses.remove(className);
+
+        return new ClassFile(className, content, sha256(content), superName, interfaces, referencedClasses, archivePath);
+    }
+
+    public static String sha256(byte[] content) {
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String sha256(String content) {
+        return sha256(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static String toClassName(String internalName) {
+        return internalName.replace('/', '.');
+    }
+}
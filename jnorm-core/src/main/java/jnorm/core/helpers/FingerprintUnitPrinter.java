@@ -0,0 +1,75 @@
+package jnorm.core.helpers;
+
+import soot.*;
+import soot.jimple.IdentityRef;
+
+/**
+ * Computes 64-bit fingerprints of units that only depend on the structure of a unit, not on the names of the
+ * locals it uses or the units it jumps to. Locals and branch targets are printed as placeholders and the printed
+ * unit is hashed with FNV-1a.
+ * <p>
+ * The output buffer is reused between units, so instances must not be shared between threads.
+ */
+public class FingerprintUnitPrinter extends AbstractUnitPrinter {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public FingerprintUnitPrinter() {
+        setIndent("");
+    }
+
+    public long fingerprint(Unit unit) {
+        output.setLength(0);
+        startOfLine = true;
+        unit.toString(this);
+
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < output.length(); i++) {
+            hash ^= output.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    @Override
+    public void local(Local l) {
+        handleIndent();
+        output.append("local");
+    }
+
+    @Override
+    public void unitRef(Unit u, boolean branchTarget) {
+        handleIndent();
+        output.append("label");
+    }
+
+    @Override
+    public void literal(String s) {
+        handleIndent();
+        output.append(s);
+    }
+
+    @Override
+    public void type(Type t) {
+        handleIndent();
+        output.append(t.toQuotedString());
+    }
+
+    @Override
+    public void methodRef(SootMethodRef m) {
+        handleIndent();
+        output.append(m.getSignature());
+    }
+
+    @Override
+    public void fieldRef(SootFieldRef f) {
+        handleIndent();
+        output.append(f.getSignature());
+    }
+
+    @Override
+    public void identityRef(IdentityRef r) {
+        handleIndent();
+        output.append(r.toString());
+    }
+}
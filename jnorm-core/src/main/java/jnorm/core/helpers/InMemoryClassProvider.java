@@ -0,0 +1,94 @@
+package jnorm.core.helpers;
+
+import soot.ClassProvider;
+import soot.ClassSource;
+import soot.IFoundFile;
+import soot.asm.AsmClassSource;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.ZipFile;
+
+/**
+ * Provides classes to Soot from class files held in memory. The classes are read with the same ASM frontend as
+ * class files on disk, every class that is not held in memory is left to the providers of the class path.
+ */
+public class InMemoryClassProvider implements ClassProvider {
+    private final Map<String, Supplier<InputStream>> classFiles;
+
+    /**
+     * @param classFiles suppliers of the class file contents by fully qualified class name
+     */
+    public InMemoryClassProvider(Map<String, Supplier<InputStream>> classFiles) {
+        this.classFiles = classFiles;
+    }
+
+    @Override
+    public ClassSource find(String className) {
+        Supplier<InputStream> classFile = classFiles.get(className);
+        if (classFile == null) return null;
+        return new InMemoryClassSource(className, new InMemoryFoundFile(className, classFile));
+    }
+
+    // Only exists to reach the protected constructor
+    private static class InMemoryClassSource extends AsmClassSource {
+        InMemoryClassSource(String className, IFoundFile foundFile) {
+            super(className, foundFile);
+        }
+    }
+
+    private static class InMemoryFoundFile implements IFoundFile {
+        private final String className;
+        private final Supplier<InputStream> classFile;
+        private InputStream inputStream;
+
+        InMemoryFoundFile(String className, Supplier<InputStream> classFile) {
+            this.className = className;
+            this.classFile = classFile;
+        }
+
+        @Override
+        public String getFilePath() {
+            return className.replace('.', '/') + ".class";
+        }
+
+        @Override
+        public boolean isZipFile() {
+            return false;
+        }
+
+        @Override
+        public ZipFile getZipFile() {
+            return null;
+        }
+
+        @Override
+        public File getFile() {
+            return null;
+        }
+
+        @Override
+        public String getAbsolutePath() {
+            return getFilePath();
+        }
+
+        @Override
+        public InputStream inputStream() {
+            inputStream = classFile.get();
+            return inputStream;
+        }
+
+        @Override
+        public void close() {
+            if (inputStream == null) return;
+            try {
+                inputStream.close();
+            } catch (Exception e) {
+                // Nothing left to read from the stream
+            }
+            inputStream = null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package jnorm.core.helpers;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads of the {@link AsyncWriter}. On Java 21 and later the multi-release JAR replaces this class with
+ * a variant that creates virtual threads.
+ */
+public class IoThreads {
+    private IoThreads() {
+    }
+
+    public static ThreadFactory newThreadFactory(String name) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static boolean isVirtual() {
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+package jnorm.core.helpers;
+
+/**
+ * Emits Java Flight Recorder events for the phases and passes of a normalization. This variant is used on Java 8,
+ * which has no JFR events, and records nothing. On Java 11 and later the multi-release JAR replaces it with a variant
+ * that emits the events.
+ * <p>
+ * Every begin method returns the started event or null if it is not recorded, so callers only compute the fields of
+ * recorded events.
+ */
+public class NormalizationEvents {
+    private NormalizationEvents() {
+    }
+
+    public static boolean isSupported() {
+        return false;
+    }
+
+    public static Object beginSceneLoad() {
+        return null;
+    }
+
+    public static void commitSceneLoad(Object event, int applicationClasses) {
+    }
+
+    public static Object beginPacks() {
+        return null;
+    }
+
+    public static void commitPacks(Object event, int applicationClasses) {
+    }
+
+    public static Object beginTransform() {
+        return null;
+    }
+
+    public static void commitTransform(Object event, String phase, String method) {
+    }
+
+    public static Object beginPass() {
+        return null;
+    }
+
+    public static void commitPass(Object event, String pass, String method, int hits) {
+    }
+
+    public static Object beginPrint() {
+        return null;
+    }
+
+    public static void commitPrint(Object event, String className, int characters) {
+    }
+
+    public static Object beginPostProcess() {
+        return null;
+    }
+
+    public static void commitPostProcess(Object event, String className) {
+    }
+
+    public static Object beginWrite() {
+        return null;
+    }
+
+    public static void commitWrite(Object event, String path, int bytes, boolean written) {
+    }
+}
@@ -0,0 +1,117 @@
+package jnorm.core.helpers;
+
+import soot.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Soot globals that name the classes Soot generates for lambdas and method references after the class that
+ * encloses the call site, and remember that class as their owner.
+ * <p>
+ * Soot numbers the generated classes with a counter over the whole scene, so their names depended on the classes
+ * that were loaded before. The number is replaced by one counted per owner. The methods of a class are transformed
+ * one after another, so the names only depend on the owner and stay the same whether a class is normalized alone,
+ * with other classes or restored from the cache.
+ */
+public class SootGlobals extends G {
+    private static final String NUMBER_SEPARATOR = "__";
+
+    private GeneratedClassScene scene;
+    private GeneratedClassFactory lambdaMetaFactory;
+
+    /**
+     * Makes {@link G#reset()} create globals of this type.
+     */
+    public static void install() {
+        G.setGlobalObjectGetter(new GlobalObjectGetter() {
+            private G instance = new SootGlobals();
+
+            @Override
+            public G getG() {
+                return instance;
+            }
+
+            @Override
+            public void reset() {
+                instance = new SootGlobals();
+            }
+        });
+    }
+
+    /**
+     * Returns the owners of the classes generated since the last reset, by generated class name.
+     * Empty if the globals are not of this type.
+     */
+    public static Map<String, String> getGeneratedClassOwners() {
+        G globals = G.v();
+        if (!(globals instanceof SootGlobals)) return Collections.emptyMap();
+        GeneratedClassFactory lambdaMetaFactory = ((SootGlobals) globals).lambdaMetaFactory;
+        return lambdaMetaFactory != null ? Collections.unmodifiableMap(lambdaMetaFactory.owners) : Collections.emptyMap();
+    }
+
+    @Override
+    public synchronized Scene soot_Scene() {
+        if (scene == null) scene = new GeneratedClassScene(g);
+        return scene;
+    }
+
+    @Override
+    public synchronized LambdaMetaFactory soot_LambdaMetaFactory() {
+        if (lambdaMetaFactory == null) lambdaMetaFactory = new GeneratedClassFactory(g);
+        return lambdaMetaFactory;
+    }
+
+    private static class GeneratedClassScene extends Scene {
+        GeneratedClassScene(Singletons.Global g) {
+            super(g);
+        }
+
+        // The old name would still resolve to the type of the renamed class
+        void renameClass(SootClass sootClass, String name) {
+            nameToClass.remove(sootClass.getName());
+            sootClass.rename(name);
+            // Signatures are cached with the name of the declaring class
+            for (SootMethod method : sootClass.getMethods()) method.setDeclaringClass(sootClass);
+            for (SootField field : sootClass.getFields()) field.setDeclaringClass(sootClass);
+        }
+    }
+
+    private static class GeneratedClassFactory extends LambdaMetaFactory {
+        private final Map<String, String> owners = new ConcurrentHashMap<>();
+        private final Map<String, Integer> classesPerOwner = new ConcurrentHashMap<>();
+        private final ThreadLocal<SootClass> enclosingClass = new ThreadLocal<>();
+
+        GeneratedClassFactory(Singletons.Global g) {
+            super(g);
+        }
+
+        @Override
+        public SootMethodRef makeLambdaHelper(List<? extends Value> bootstrapArgs, int tag, String name, Type[] invokedType,
+                                              SootClass enclosingClass) {
+            this.enclosingClass.set(enclosingClass);
+            try {
+                return super.makeLambdaHelper(bootstrapArgs, tag, name, invokedType, enclosingClass);
+            } finally {
+                this.enclosingClass.remove();
+            }
+        }
+
+        // Called once the class is complete, before it is added to the scene
+        @Override
+        protected void addClassAndInvalidateHierarchy(SootClass generatedClass) {
+            SootClass owner = enclosingClass.get();
+            String className = generatedClass.getName();
+            int numberStart = className.lastIndexOf(NUMBER_SEPARATOR);
+            if (owner != null && numberStart > 0 && Scene.v() instanceof GeneratedClassScene) {
+                int number = classesPerOwner.merge(owner.getName(), 1, Integer::sum);
+                String name = className.substring(0, numberStart) + NUMBER_SEPARATOR + number;
+                ((GeneratedClassScene) Scene.v()).renameClass(generatedClass, name);
+                owners.put(name, owner.getName());
+            }
+            super.addClassAndInvalidateHierarchy(generatedClass);
+        }
+    }
+}
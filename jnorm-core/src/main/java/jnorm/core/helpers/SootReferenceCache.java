@@ -0,0 +1,79 @@
+package jnorm.core.helpers;
+
+import soot.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical method refs for the fixed signatures that normalization passes synthesize, so every ref is only built
+ * once per run instead of once per match. The refs are declared by stand-in classes with the same name as the real
+ * class, which hold the referenced methods. Resolving a ref therefore finds its method instead of adding a phantom
+ * method to a class that is shared between threads.
+ * <p>
+ * Stand-in classes are only created on first use, as creating one rebinds the {@link RefType} of its name.
+ * A cache belongs to one run, as its classes and types are only valid for the current {@link Scene}.
+ */
+public class SootReferenceCache {
+    private static final String OBJECT_CLASS = "java.lang.Object";
+    private static final String STRING_CONCAT_FACTORY_CLASS = "java.lang.invoke.StringConcatFactory";
+    private static final String MAKE_CONCAT_WITH_CONSTANTS = "makeConcatWithConstants";
+
+    private final Map<String, SootClass> classes = new ConcurrentHashMap<>();
+    private final Map<String, SootMethodRef> methodRefs = new ConcurrentHashMap<>();
+    private final List<Type> stringConcatBootstrapTypes = new ArrayList<>();
+
+    public SootReferenceCache() {
+        stringConcatBootstrapTypes.add(RefType.v("java.lang.invoke.MethodHandles$Lookup"));
+        stringConcatBootstrapTypes.add(RefType.v("java.lang.String"));
+        stringConcatBootstrapTypes.add(RefType.v("java.lang.invoke.MethodType"));
+        stringConcatBootstrapTypes.add(RefType.v("java.lang.String"));
+        stringConcatBootstrapTypes.add(ArrayType.v(RefType.v(OBJECT_CLASS), 1));
+    }
+
+    /**
+     * Returns a ref to the non-static method with the given signature, declared by the stand-in class of the given name.
+     */
+    public SootMethodRef getMethodRef(String className, String name, List<Type> parameterTypes, Type returnType) {
+        String signature = "<" + className + ": " + SootMethod.getSubSignature(name, parameterTypes, returnType) + ">";
+        SootMethodRef methodRef = methodRefs.get(signature);
+        if (methodRef != null) return methodRef;
+
+        SootClass declaringClass = classes.computeIfAbsent(className, SootClass::new);
+        // Methods of the same class may be added concurrently for different signatures
+        synchronized (declaringClass) {
+            SootMethod method = declaringClass.getMethodUnsafe(name, parameterTypes, returnType);
+            if (method == null) {
+                method = new SootMethod(name, parameterTypes, returnType);
+                declaringClass.addMethod(method);
+            }
+            methodRef = method.makeRef();
+        }
+        SootMethodRef existing = methodRefs.putIfAbsent(signature, methodRef);
+        return existing != null ? existing : methodRef;
+    }
+
+    // <java.lang.Object: java.lang.Class getClass()>
+    public SootMethodRef getObjectGetClass() {
+        return getMethodRef(OBJECT_CLASS, "getClass", new ArrayList<>(), RefType.v("java.lang.Class"));
+    }
+
+    // <java.lang.Object: java.lang.String toString()>
+    public SootMethodRef getObjectToString() {
+        return getMethodRef(OBJECT_CLASS, "toString", new ArrayList<>(), RefType.v("java.lang.String"));
+    }
+
+    // Bootstrap method of dynamic string concatenations
+    public SootMethodRef getStringConcatBootstrap() {
+        return getMethodRef(STRING_CONCAT_FACTORY_CLASS, MAKE_CONCAT_WITH_CONSTANTS, stringConcatBootstrapTypes,
+                RefType.v("java.lang.invoke.CallSite"));
+    }
+
+    // Dynamic string concatenation of values with the given types
+    public SootMethodRef getStringConcat(List<Type> dynamicTypes) {
+        return getMethodRef(SootClass.INVOKEDYNAMIC_DUMMY_CLASS_NAME, MAKE_CONCAT_WITH_CONSTANTS, dynamicTypes,
+                RefType.v("java.lang.String"));
+    }
+}
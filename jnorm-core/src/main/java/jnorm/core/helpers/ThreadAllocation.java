@@ -0,0 +1,39 @@
+package jnorm.core.helpers;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by the current thread, as measured by the HotSpot {@link com.sun.management.ThreadMXBean}.
+ */
+public class ThreadAllocation {
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = lookupThreadMXBean();
+
+    private ThreadAllocation() {
+    }
+
+    public static boolean isSupported() {
+        return THREAD_MX_BEAN != null;
+    }
+
+    /**
+     * @return the bytes the current thread allocated so far, 0 if allocations are not measured
+     */
+    public static long allocatedBytes() {
+        if (THREAD_MX_BEAN == null) return 0;
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean lookupThreadMXBean() {
+        try {
+            java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) return null;
+            com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (!allocationMXBean.isThreadAllocatedMemorySupported()) return null;
+            if (!allocationMXBean.isThreadAllocatedMemoryEnabled()) allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+            return allocationMXBean;
+        } catch (RuntimeException | LinkageError e) {
+            // Not a HotSpot based JVM
+            return null;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package jnorm.core.helpers;
+
+import jnorm.core.model.MethodProfiler;
+import jnorm.core.model.NormalizationStatistics;
+import jnorm.core.model.PassStatistics;
+import soot.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the time and allocations of a body transformer of Soot under the name of its phase, and its time per method
+ * if profiling is enabled. Each transform of a body is also emitted as JFR event while a recording is running.
+ */
+public class TimedBodyTransformer extends BodyTransformer {
+    // Packs that transform the bodies of the application classes, jb builds them
+    private static final String[] BODY_PACKS = {"jb", "jtp", "jop", "jap"};
+
+    private final BodyTransformer transformer;
+    // Null if pass timing is not enabled
+    private final PassStatistics pass;
+    // Null if profiling is not enabled
+    private final MethodProfiler profiler;
+    private final String profilePhase;
+
+    private TimedBodyTransformer(BodyTransformer transformer, PassStatistics pass, MethodProfiler profiler, String profilePhase) {
+        this.transformer = transformer;
+        this.pass = pass;
+        this.profiler = profiler;
+        this.profilePhase = profilePhase;
+    }
+
+    /**
+     * Replaces every transform of the body packs with a timed one, keeping the phase options that are set so far.
+     *
+     * @param statistics null to only emit the JFR events
+     */
+    public static void instrumentBodyPacks(NormalizationStatistics statistics) {
+        for (String packName : BODY_PACKS) {
+            Pack pack = PackManager.v().getPack(packName);
+            List<Transform> transforms = new ArrayList<>();
+            pack.forEach(transforms::add);
+
+            for (Transform transform : transforms) {
+                if (!(transform.getTransformer() instanceof BodyTransformer)) continue;
+                String phaseName = transform.getPhaseName();
+                // Phase options belong to the transform object, not to its name
+                Map<String, String> phaseOptions = PhaseOptions.v().getPhaseOptions(transform);
+
+                BodyTransformer transformer = (BodyTransformer) transform.getTransformer();
+                // Soot's own transforms are profiled per pack, the ones of jNorm one by one
+                String profilePhase = transformer.getClass().getName().startsWith("jnorm.") ? phaseName : packName;
+                Transform timedTransform = new Transform(phaseName, new TimedBodyTransformer(transformer,
+                        statistics != null ? statistics.getPass(phaseName) : null,
+                        statistics != null ? statistics.getProfiler() : null, profilePhase));
+                timedTransform.setDeclaredOptions(transform.getDeclaredOptions());
+                timedTransform.setDefaultOptions(transform.getDefaultOptions());
+                pack.insertAfter(timedTransform, phaseName);
+                pack.remove(phaseName);
+                phaseOptions.forEach((key, value) -> PhaseOptions.v().setPhaseOption(phaseName, key + ":" + value));
+            }
+        }
+    }
+
+    @Override
+    protected void internalTransform(Body body, String phaseName, Map<String, String> options) {
+        Object event = NormalizationEvents.beginTransform();
+        if (pass == null && profiler == null) {
+            try {
+                transformer.transform(body, phaseName, options);
+            } finally {
+                if (event != null) NormalizationEvents.commitTransform(event, phaseName, body.getMethod().getSignature());
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        long allocated = pass != null ? ThreadAllocation.allocatedBytes() : 0;
+        try {
+            transformer.transform(body, phaseName, options);
+        } finally {
+            if (pass != null) pass.record(start, allocated);
+            if (profiler != null) profiler.recordTransform(body, profilePhase, System.nanoTime() - start);
+            if (event != null) NormalizationEvents.commitTransform(event, phaseName, body.getMethod().getSignature());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package jnorm.core.helpers;
+
+import soot.Body;
+import soot.Unit;
+import soot.UnitPatchingChain;
+import soot.Value;
+import soot.jimple.*;
+
+import java.util.*;
+
+/**
+ * Classifies the units of a body by their statement shape in a single walk and hands every pass only the units
+ * with a shape it is interested in, in unit chain order.
+ * Passes have to run in the order they were registered. Units that a pass swaps in or inserts through the dispatcher
+ * are classified as well and handed to all later passes, units removed from the body are skipped.
+ * This way every pass sees the same units as if it walked the whole unit chain itself.
+ * Units changed in place keep the shape they were classified with, so a pass must not change a unit in place
+ * into a shape that a later pass is interested in.
+ * <p>
+ * The same walk collects the {@link BodyFeatures} of the body, a pass can additionally be restricted to bodies
+ * with one of the given features.
+ */
+public class UnitDispatcher {
+    // AssignStmt shapes, classified by the right hand side
+    public static final int ASSIGN_VIRTUAL_INVOKE = 1;
+    public static final int ASSIGN_SPECIAL_INVOKE = 1 << 1;
+    public static final int ASSIGN_STATIC_INVOKE = 1 << 2;
+    public static final int ASSIGN_INTERFACE_INVOKE = 1 << 3;
+    public static final int ASSIGN_DYNAMIC_INVOKE = 1 << 4;
+    public static final int ASSIGN_CAST = 1 << 5;
+    public static final int ASSIGN_NEW = 1 << 6;
+    public static final int ASSIGN_NEW_ARRAY = 1 << 7;
+    public static final int ASSIGN_ADD = 1 << 8;
+    // InvokeStmt shapes, classified by the invoke expression
+    public static final int INVOKE_VIRTUAL = 1 << 9;
+    public static final int INVOKE_SPECIAL = 1 << 10;
+    public static final int INVOKE_STATIC = 1 << 11;
+    public static final int INVOKE_INTERFACE = 1 << 12;
+    public static final int INVOKE_DYNAMIC = 1 << 13;
+
+    // Distance between the positions of neighbouring units, leaves room for units inserted later on
+    private static final long POSITION_STEP = 1L << 32;
+
+    private final UnitPatchingChain unitChain;
+    private final int[] passShapes;
+    private final int[] passFeatures;
+    private final List<List<Unit>> passUnits = new ArrayList<>();
+    private final Map<Unit, Long> positions = new HashMap<>();
+    private int currentPass = -1;
+    private int features;
+
+    /**
+     * @param passShapes   the shapes each pass is interested in, in the order the passes are run
+     * @param passFeatures the features each pass requires one of, 0 if the pass does not require any
+     */
+    public UnitDispatcher(Body body, int[] passShapes, int[] passFeatures) {
+        this.unitChain = body.getUnits();
+        this.passShapes = passShapes;
+        this.passFeatures = passFeatures;
+        this.features = BodyFeatures.of(body);
+        for (int i = 0; i < passShapes.length; i++) {
+            passUnits.add(new ArrayList<>());
+        }
+
+        long position = 0;
+        for (Unit unit : unitChain) {
+            positions.put(unit, position);
+            position += POSITION_STEP;
+            features |= BodyFeatures.of(unit);
+
+            int shape = shapeOf(unit);
+            if (shape == 0) continue;
+            for (int pass = 0; pass < passShapes.length; pass++) {
+                if ((passShapes[pass] & shape) != 0) passUnits.get(pass).add(unit);
+            }
+        }
+    }
+
+    /**
+     * Returns the units of the body that the given pass is interested in.
+     * Calling this marks the pass as the current one, changes made afterwards are only visible to later passes.
+     */
+    public List<Unit> unitsFor(int pass) {
+        currentPass = pass;
+        List<Unit> units = new ArrayList<>();
+        for (Unit unit : passUnits.get(pass)) {
+            if (unitChain.contains(unit)) units.add(unit);
+        }
+        return units;
+    }
+
+    /**
+     * Checks whether the given pass can change anything, that is the body has one of the required features
+     * and there are units with a shape the pass is interested in.
+     */
+    public boolean isApplicable(int pass) {
+        if (passFeatures[pass] != 0 && (features & passFeatures[pass]) == 0) return false;
+        return !passUnits.get(pass).isEmpty();
+    }
+
+    public boolean hasFeature(int feature) {
+        return (features & feature) != 0;
+    }
+
+    public void swap(Unit out, Unit in) {
+        long position = positionOf(out);
+        unitChain.swapWith(out, in);
+        register(in, position);
+    }
+
+    public void insertBefore(Unit toInsert, Unit point) {
+        long pointPosition = positionOf(point);
+        unitChain.insertBefore(toInsert, point);
+        // Units inserted into the chain without the dispatcher are registered on the way, in chain order
+        Deque<Unit> unknownUnits = new ArrayDeque<>();
+        Unit pred = unitChain.getPredOf(toInsert);
+        while (pred != null && !positions.containsKey(pred)) {
+            unknownUnits.addFirst(pred);
+            pred = unitChain.getPredOf(pred);
+        }
+        unknownUnits.addLast(toInsert);
+
+        long predPosition = pred == null ? pointPosition - POSITION_STEP : positions.get(pred);
+        long step = (pointPosition - predPosition) / (unknownUnits.size() + 1);
+        long position = predPosition;
+        for (Unit unit : unknownUnits) {
+            position += step;
+            register(unit, position);
+        }
+    }
+
+    // Units to swap or insert before have to be known, otherwise their position is unknown as well
+    private long positionOf(Unit unit) {
+        return Objects.requireNonNull(positions.get(unit),
+                () -> "Unit was neither in the body nor swapped in or inserted through the dispatcher: " + unit);
+    }
+
+    private void register(Unit unit, long position) {
+        positions.put(unit, position);
+        features |= BodyFeatures.of(unit);
+        int shape = shapeOf(unit);
+        if (shape == 0) return;
+
+        for (int pass = currentPass + 1; pass < passShapes.length; pass++) {
+            if ((passShapes[pass] & shape) == 0) continue;
+            List<Unit> units = passUnits.get(pass);
+            units.add(insertionIndex(units, position), unit);
+        }
+    }
+
+    // Units of a pass are sorted by position, so the insertion index can be found by binary search
+    private int insertionIndex(List<Unit> units, long position) {
+        int low = 0;
+        int high = units.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions.get(units.get(mid)) <= position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public static int shapeOf(Unit unit) {
+        if (unit instanceof AssignStmt) {
+            Value rhs = ((AssignStmt) unit).getRightOp();
+            if (rhs instanceof InvokeExpr) return invokeShape((InvokeExpr) rhs, ASSIGN_VIRTUAL_INVOKE, ASSIGN_SPECIAL_INVOKE,
+                    ASSIGN_STATIC_INVOKE, ASSIGN_INTERFACE_INVOKE, ASSIGN_DYNAMIC_INVOKE);
+            if (rhs instanceof CastExpr) return ASSIGN_CAST;
+            if (rhs instanceof NewExpr) return ASSIGN_NEW;
+            if (rhs instanceof NewArrayExpr) return ASSIGN_NEW_ARRAY;
+            if (rhs instanceof AddExpr) return ASSIGN_ADD;
+        } else if (unit instanceof InvokeStmt) {
+            return invokeShape(((InvokeStmt) unit).getInvokeExpr(), INVOKE_VIRTUAL, INVOKE_SPECIAL,
+                    INVOKE_STATIC, INVOKE_INTERFACE, INVOKE_DYNAMIC);
+        }
+        return 0;
+    }
+
+    private static int invokeShape(InvokeExpr invokeExpr, int virtualShape, int specialShape, int staticShape,
+                                   int interfaceShape, int dynamicShape) {
+        if (invokeExpr instanceof VirtualInvokeExpr) return virtualShape;
+        if (invokeExpr instanceof SpecialInvokeExpr) return specialShape;
+        if (invokeExpr instanceof StaticInvokeExpr) return staticShape;
+        if (invokeExpr instanceof InterfaceInvokeExpr) return interfaceShape;
+        if (invokeExpr instanceof DynamicInvokeExpr) return dynamicShape;
+        return 0;
+    }
+}
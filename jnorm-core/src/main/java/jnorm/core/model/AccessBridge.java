@@ -0,0 +1,68 @@
+package jnorm.core.model;
+
+import soot.SootFieldRef;
+import soot.SootMethodRef;
+
+/**
+ * Field or method an access$ bridge method forwards to. Only holds refs, so it shares nothing with the body of the
+ * bridge, which its own class may be transforming meanwhile.
+ */
+public class AccessBridge {
+    public enum Kind {
+        // The bridge does not end in a field access or a supported invoke
+        NONE,
+        INSTANCE_FIELD,
+        STATIC_FIELD,
+        STATIC_INVOKE,
+        VIRTUAL_INVOKE,
+        SPECIAL_INVOKE
+    }
+
+    Kind kind;
+    // Set for the field kinds
+    SootFieldRef fieldRef;
+    // Set for the invoke kinds
+    SootMethodRef methodRef;
+    // Whether the bridge writes the target field
+    boolean fieldAccess;
+    int relevantUnitCount;
+
+    public AccessBridge(Kind kind, SootFieldRef fieldRef, SootMethodRef methodRef, boolean fieldAccess, int relevantUnitCount) {
+        this.kind = kind;
+        this.fieldRef = fieldRef;
+        this.methodRef = methodRef;
+        this.fieldAccess = fieldAccess;
+        this.relevantUnitCount = relevantUnitCount;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public SootFieldRef getFieldRef() {
+        return fieldRef;
+    }
+
+    public SootMethodRef getMethodRef() {
+        return methodRef;
+    }
+
+    public boolean isFieldAccess() {
+        return fieldAccess;
+    }
+
+    public int getRelevantUnitCount() {
+        return relevantUnitCount;
+    }
+
+    @Override
+    public String toString() {
+        return "AccessBridge{" +
+                "kind=" + kind +
+                ", fieldRef=" + fieldRef +
+                ", methodRef=" + methodRef +
+                ", fieldAccess=" + fieldAccess +
+                ", relevantUnitCount=" + relevantUnitCount +
+                '}';
+    }
+}
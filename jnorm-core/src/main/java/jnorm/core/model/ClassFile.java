@@ -0,0 +1,81 @@
+package jnorm.core.model;
+
+import java.util.List;
+import java.util.Set;
+
+public class ClassFile {
+    // Fully qualified name, as in the Jimple output
+    String className;
+    byte[] content;
+    // Hex encoded SHA-256 of the content
+    String contentHash;
+    // Superclass and interfaces, the superclass is null for java.lang.Object
+    String superName;
+    List<String> interfaces;
+    // Every class in the constant pool, the class itself excluded
+    Set<String> referencedClasses;
+    // Path of the nested archive the class was read from, null for classes of the input itself
+    String archivePath;
+
+    public ClassFile(String className, byte[] content, String contentHash, String superName, List<String> interfaces,
+                     Set<String> referencedClasses) {
+        this(className, content, contentHash, superName, interfaces, referencedClasses, null);
+    }
+
+    public ClassFile(String className, byte[] content, String contentHash, String superName, List<String> interfaces,
+                     Set<String> referencedClasses, String archivePath) {
+        this.className = className;
+        this.content = content;
+        this.contentHash = contentHash;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.referencedClasses = referencedClasses;
+        this.archivePath = archivePath;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    public List<String> getInterfaces() {
+        return interfaces;
+    }
+
+    public Set<String> getReferencedClasses() {
+        return referencedClasses;
+    }
+
+    public String getArchivePath() {
+        return archivePath;
+    }
+
+    // Top level class of the nest, inner classes share it with their outer class
+    public String getNestHost() {
+        int separator = className.indexOf('$');
+        return separator < 0 ? className : className.substring(0, separator);
+    }
+
+    @Override
+    public String toString() {
+        return "ClassFile{" +
+                "className='" + className + '\'' +
+                ", contentHash='" + contentHash + '\'' +
+                ", superName='" + superName + '\'' +
+                ", interfaces=" + interfaces +
+                ", referencedClasses=" + referencedClasses.size() +
+                ", archivePath='" + archivePath + '\'' +
+                '}';
+    }
+}
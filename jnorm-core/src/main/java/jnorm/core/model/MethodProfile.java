@@ -0,0 +1,77 @@
+package jnorm.core.model;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MethodProfile {
+    String className;
+    // Sub-signature, unique within the class
+    String method;
+    // Largest size of the body after any transform
+    volatile int units;
+    volatile int locals;
+    volatile int traps;
+    final Map<String, AtomicLong> nanosPerPhase = new ConcurrentHashMap<>();
+
+    public MethodProfile(String className, String method) {
+        this.className = className;
+        this.method = method;
+    }
+
+    public synchronized void recordBodySize(int units, int locals, int traps) {
+        this.units = Math.max(this.units, units);
+        this.locals = Math.max(this.locals, locals);
+        this.traps = Math.max(this.traps, traps);
+    }
+
+    public void recordNanos(String phase, long nanos) {
+        nanosPerPhase.computeIfAbsent(phase, name -> new AtomicLong()).addAndGet(nanos);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public int getUnits() {
+        return units;
+    }
+
+    public int getLocals() {
+        return locals;
+    }
+
+    public int getTraps() {
+        return traps;
+    }
+
+    public long getNanos(String phase) {
+        AtomicLong nanos = nanosPerPhase.get(phase);
+        return nanos != null ? nanos.get() : 0;
+    }
+
+    public Map<String, AtomicLong> getNanosPerPhase() {
+        return Collections.unmodifiableMap(nanosPerPhase);
+    }
+
+    public long getTotalNanos() {
+        return nanosPerPhase.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    @Override
+    public String toString() {
+        return "MethodProfile{" +
+                "className='" + className + '\'' +
+                ", method='" + method + '\'' +
+                ", units=" + units +
+                ", locals=" + locals +
+                ", traps=" + traps +
+                ", nanosPerPhase=" + nanosPerPhase +
+                '}';
+    }
+}
@@ -0,0 +1,125 @@
+package jnorm.core.model;
+
+import soot.Body;
+import soot.SootMethod;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Attributes the cost of a run to classes and methods: the size of every body and the time spent on it per phase.
+ * The transforms of Soot are summed up per pack, like jb and jop, the transformers of jNorm are recorded one by one.
+ * Printing is recorded per class.
+ */
+public class MethodProfiler {
+    // By class name and sub-signature
+    private final Map<String, MethodProfile> methods = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> printNanos = new ConcurrentHashMap<>();
+    // Phases in the order they were first recorded, the columns of the CSV
+    private final Set<String> phases = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    public void recordTransform(Body body, String phase, long nanos) {
+        SootMethod method = body.getMethod();
+        String className = method.getDeclaringClass().getName();
+        String subSignature = method.getSubSignature();
+        MethodProfile profile = methods.computeIfAbsent(className + ": " + subSignature, key -> new MethodProfile(className, subSignature));
+        profile.recordBodySize(body.getUnits().size(), body.getLocalCount(), body.getTraps().size());
+        profile.recordNanos(phase, nanos);
+        phases.add(phase);
+    }
+
+    public void recordPrint(String className, long nanos) {
+        printNanos.computeIfAbsent(className, name -> new AtomicLong()).addAndGet(nanos);
+    }
+
+    public List<MethodProfile> getMethods() {
+        return new ArrayList<>(methods.values());
+    }
+
+    /**
+     * @return the slowest classes and methods, with their total time over all phases
+     */
+    public String report(int topN) {
+        Map<String, List<MethodProfile>> methodsPerClass = methods.values().stream()
+                .collect(Collectors.groupingBy(MethodProfile::getClassName));
+        Set<String> classNames = new HashSet<>(methodsPerClass.keySet());
+        classNames.addAll(printNanos.keySet());
+
+        Map<String, Long> classNanos = new HashMap<>();
+        for (String className : classNames) {
+            long nanos = getPrintNanos(className);
+            for (MethodProfile profile : methodsPerClass.getOrDefault(className, Collections.emptyList())) {
+                nanos += profile.getTotalNanos();
+            }
+            classNanos.put(className, nanos);
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Slowest %d of %d classes:%n", Math.min(topN, classNames.size()), classNames.size()));
+        report.append(String.format("%10s %10s %8s %8s  %s%n", "total ms", "print ms", "methods", "units", "class"));
+        classNames.stream()
+                .sorted(Comparator.<String, Long>comparing(classNanos::get, Comparator.reverseOrder()).thenComparing(Comparator.naturalOrder()))
+                .limit(topN)
+                .forEach(className -> {
+                    List<MethodProfile> classMethods = methodsPerClass.getOrDefault(className, Collections.emptyList());
+                    report.append(String.format("%10.1f %10.1f %8d %8d  %s%n", toMillis(classNanos.get(className)),
+                            toMillis(getPrintNanos(className)), classMethods.size(),
+                            classMethods.stream().mapToInt(MethodProfile::getUnits).sum(), className));
+                });
+
+        report.append(String.format("Slowest %d of %d methods:%n", Math.min(topN, methods.size()), methods.size()));
+        report.append(String.format("%10s %8s %8s %8s  %s%n", "total ms", "units", "locals", "traps", "method"));
+        methods.values().stream()
+                .sorted(Comparator.comparingLong(MethodProfile::getTotalNanos).reversed()
+                        .thenComparing(MethodProfile::getClassName).thenComparing(MethodProfile::getMethod))
+                .limit(topN)
+                .forEach(profile -> report.append(String.format("%10.1f %8d %8d %8d  <%s: %s>%n", toMillis(profile.getTotalNanos()),
+                        profile.getUnits(), profile.getLocals(), profile.getTraps(), profile.getClassName(), profile.getMethod())));
+        return report.toString();
+    }
+
+    /**
+     * Writes a row per method with its body size and the nanoseconds of every phase.
+     */
+    public void writeCsv(Path file) throws IOException {
+        List<String> columns;
+        synchronized (phases) {
+            columns = new ArrayList<>(phases);
+        }
+
+        StringBuilder csv = new StringBuilder("class,method,units,locals,traps");
+        columns.forEach(phase -> csv.append(',').append(phase).append("_ns"));
+        csv.append(",total_ns\n");
+        methods.values().stream()
+                .sorted(Comparator.comparing(MethodProfile::getClassName).thenComparing(MethodProfile::getMethod))
+                .forEach(profile -> {
+                    csv.append(escapeCsv(profile.getClassName())).append(',').append(escapeCsv(profile.getMethod()))
+                            .append(',').append(profile.getUnits()).append(',').append(profile.getLocals())
+                            .append(',').append(profile.getTraps());
+                    columns.forEach(phase -> csv.append(',').append(profile.getNanos(phase)));
+                    csv.append(',').append(profile.getTotalNanos()).append('\n');
+                });
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long getPrintNanos(String className) {
+        AtomicLong nanos = printNanos.get(className);
+        return nanos != null ? nanos.get() : 0;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    // Sub-signatures contain commas between the parameter types
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
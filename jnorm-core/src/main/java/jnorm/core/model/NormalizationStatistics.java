@@ -1,31 +1,294 @@
 package jnorm.core.model;
 
+import soot.Body;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the normalizations, the time of the passes and the cost of the classes and methods of one or more runs.
+ * <p>
+ * The counters are striped, so body transformers on many threads can count without contending. Statistics of
+ * partitioned or repeated runs are combined with {@link #merge(NormalizationStatistics)}, and
+ * {@link #snapshot()} copies them at a point in time. Once enabled, the counters are also kept per class.
+ */
 public class NormalizationStatistics {
+    // Counters are striped, as body transformers may run on multiple threads
     // JDK version
-    public int sortMethod = 0;
-    public int arithmetic = 0;
-    public int charSequenceToString = 0;
-    public int emptyTryCatch = 0;
-    public int stringConstantConcat = 0;
-    public int methodRefOperator = 0;
-    public int bufferMethod = 0;
-    public int tryWithResources = 0;
-    public int duplicateCheckcast = 0;
-    public int enumUsage = 0;
-    
+    public final LongAdder sortMethod = new LongAdder();
+    public final LongAdder arithmetic = new LongAdder();
+    public final LongAdder charSequenceToString = new LongAdder();
+    public final LongAdder emptyTryCatch = new LongAdder();
+    public final LongAdder stringConstantConcat = new LongAdder();
+    public final LongAdder methodRefOperator = new LongAdder();
+    public final LongAdder bufferMethod = new LongAdder();
+    public final LongAdder tryWithResources = new LongAdder();
+    public final LongAdder duplicateCheckcast = new LongAdder();
+    public final LongAdder enumUsage = new LongAdder();
+
     // target level
-    public int outerClassObjectCreation = 0;
-    public int dynamicStringConcat = 0;
-    public int nestBasedAccessControl = 0;
-    public int privateMethodInvocation = 0;
-    public int innerClassInstantiation = 0;
-    
+    public final LongAdder outerClassObjectCreation = new LongAdder();
+    public final LongAdder dynamicStringConcat = new LongAdder();
+    public final LongAdder nestBasedAccessControl = new LongAdder();
+    public final LongAdder privateMethodInvocation = new LongAdder();
+    public final LongAdder innerClassInstantiation = new LongAdder();
+
     // aggressive normalization
-    public int typecheck = 0;
+    public final LongAdder typecheck = new LongAdder();
 
     // additional info
-    public int amountOfClasses = 0;
-    public int amountOfMethods = 0;
+    // classes that were written or restored from the cache
+    public final LongAdder amountOfClasses = new LongAdder();
+    public final LongAdder amountOfMethods = new LongAdder();
+    // classes restored from the cache instead of being normalized
+    public final LongAdder amountOfCachedClasses = new LongAdder();
+
+    // skipped passes, amount of bodies a pass did not have to look at
+    public final LongAdder skippedArithmetic = new LongAdder();
+    public final LongAdder skippedStringConcat = new LongAdder();
+    public final LongAdder skippedPrivateMethodCalls = new LongAdder();
+    public final LongAdder skippedCharSequenceToString = new LongAdder();
+    public final LongAdder skippedBufferMethodCalls = new LongAdder();
+    public final LongAdder skippedNullChecks = new LongAdder();
+    public final LongAdder skippedDuplicateTypeCast = new LongAdder();
+    public final LongAdder skippedEnum = new LongAdder();
+    public final LongAdder skippedRedundantTraps = new LongAdder();
+    public final LongAdder skippedTraps = new LongAdder();
+    public final LongAdder skippedInnerClassInits = new LongAdder();
+    public final LongAdder skippedNestBasedPrivateAccesses = new LongAdder();
+    public final LongAdder skippedDynamicStringConcatCasts = new LongAdder();
+    public final LongAdder skippedDynamicStringConstantConcat = new LongAdder();
+
+    // Time and allocations per pass and stage, in the order they are registered, only recorded once enabled
+    private volatile boolean passTimingEnabled = false;
+    private final Map<String, PassStatistics> passes = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    // Counters by class and counter name, only recorded once enabled
+    private volatile Map<String, Map<String, LongAdder>> classCounters = null;
+    // Every counter by name, in the order they are reported
+    private final Map<String, LongAdder> counters = new LinkedHashMap<>();
+    // Names of the counters of this object, to file the counts of a class under
+    private final Map<LongAdder, String> counterNames = new IdentityHashMap<>();
+
+    // Cost per class and method, only recorded once enabled
+    private volatile MethodProfiler profiler = null;
+
+    public NormalizationStatistics() {
+        addCounter("sortMethod", sortMethod);
+        addCounter("arithmetic", arithmetic);
+        addCounter("charSequenceToString", charSequenceToString);
+        addCounter("emptyTryCatch", emptyTryCatch);
+        addCounter("stringConstantConcat", stringConstantConcat);
+        addCounter("methodRefOperator", methodRefOperator);
+        addCounter("bufferMethod", bufferMethod);
+        addCounter("tryWithResources", tryWithResources);
+        addCounter("duplicateCheckcast", duplicateCheckcast);
+        addCounter("enumUsage", enumUsage);
+        addCounter("outerClassObjectCreation", outerClassObjectCreation);
+        addCounter("dynamicStringConcat", dynamicStringConcat);
+        addCounter("nestBasedAccessControl", nestBasedAccessControl);
+        addCounter("privateMethodInvocation", privateMethodInvocation);
+        addCounter("innerClassInstantiation", innerClassInstantiation);
+        addCounter("typecheck", typecheck);
+        addCounter("amountOfClasses", amountOfClasses);
+        addCounter("amountOfMethods", amountOfMethods);
+        addCounter("amountOfCachedClasses", amountOfCachedClasses);
+        addCounter("skippedArithmetic", skippedArithmetic);
+        addCounter("skippedStringConcat", skippedStringConcat);
+        addCounter("skippedPrivateMethodCalls", skippedPrivateMethodCalls);
+        addCounter("skippedCharSequenceToString", skippedCharSequenceToString);
+        addCounter("skippedBufferMethodCalls", skippedBufferMethodCalls);
+        addCounter("skippedNullChecks", skippedNullChecks);
+        addCounter("skippedDuplicateTypeCast", skippedDuplicateTypeCast);
+        addCounter("skippedEnum", skippedEnum);
+        addCounter("skippedRedundantTraps", skippedRedundantTraps);
+        addCounter("skippedTraps", skippedTraps);
+        addCounter("skippedInnerClassInits", skippedInnerClassInits);
+        addCounter("skippedNestBasedPrivateAccesses", skippedNestBasedPrivateAccesses);
+        addCounter("skippedDynamicStringConcatCasts", skippedDynamicStringConcatCasts);
+        addCounter("skippedDynamicStringConstantConcat", skippedDynamicStringConstantConcat);
+    }
+
+    private void addCounter(String name, LongAdder counter) {
+        counters.put(name, counter);
+        counterNames.put(counter, name);
+    }
+
+    public void enableProfiling() {
+        if (profiler == null) profiler = new MethodProfiler();
+    }
+
+    /**
+     * @return the profiler, null if profiling is not enabled
+     */
+    public MethodProfiler getProfiler() {
+        return profiler;
+    }
+
+    public void enablePassTiming() {
+        this.passTimingEnabled = true;
+    }
+
+    public boolean isPassTimingEnabled() {
+        return passTimingEnabled;
+    }
+
+    /**
+     * @return the statistics of the pass, null if pass timing is not enabled
+     */
+    public PassStatistics getPass(String name) {
+        if (!passTimingEnabled) return null;
+        return passes.computeIfAbsent(name, PassStatistics::new);
+    }
+
+    public List<PassStatistics> getPasses() {
+        synchronized (passes) {
+            return new ArrayList<>(passes.values());
+        }
+    }
+
+    public synchronized void enableClassCounters() {
+        if (classCounters == null) classCounters = new ConcurrentHashMap<>();
+    }
+
+    public boolean isClassCountersEnabled() {
+        return classCounters != null;
+    }
+
+    /**
+     * Increments a counter of this object, and the count of the declaring class of the body if the counters are kept
+     * per class.
+     */
+    public void count(LongAdder counter, Body body) {
+        counter.increment();
+        if (classCounters != null) countForClass(counter, body.getMethod().getDeclaringClass().getName(), 1);
+    }
+
+    public void count(LongAdder counter, String className) {
+        counter.increment();
+        if (classCounters != null) countForClass(counter, className, 1);
+    }
+
+    private void countForClass(LongAdder counter, String className, long amount) {
+        classCounters.computeIfAbsent(className, name -> new ConcurrentHashMap<>())
+                .computeIfAbsent(counterNames.get(counter), name -> new LongAdder())
+                .add(amount);
+    }
+
+    /**
+     * @return the value of every counter by name, in the order they are declared
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+    /**
+     * @return the counters of every class that counted, by class and counter name in sorted order, empty if the
+     * counters are not kept per class
+     */
+    public Map<String, Map<String, Long>> getClassCounters() {
+        Map<String, Map<String, Long>> counters = new TreeMap<>();
+        if (classCounters == null) return counters;
+        classCounters.forEach((className, classCounter) -> {
+            Map<String, Long> values = new TreeMap<>();
+            classCounter.forEach((name, counter) -> values.put(name, counter.sum()));
+            counters.put(className, values);
+        });
+        return counters;
+    }
+
+    /**
+     * Copies the counters, passes and counters per class as they are now. Counts that happen while copying may or
+     * may not be part of the copy. The profile is not copied.
+     */
+    public NormalizationStatistics snapshot() {
+        NormalizationStatistics snapshot = new NormalizationStatistics();
+        snapshot.passTimingEnabled = passTimingEnabled;
+        if (classCounters != null) snapshot.enableClassCounters();
+        snapshot.merge(this);
+        return snapshot;
+    }
+
+    /**
+     * Adds the counters, passes and counters per class of the other statistics to these, for example of another
+     * partition of the input or of another run. The profile is not merged.
+     */
+    public void merge(NormalizationStatistics other) {
+        other.counters.forEach((name, counter) -> counters.get(name).add(counter.sum()));
+        for (PassStatistics pass : other.getPasses()) {
+            passes.computeIfAbsent(pass.getName(), PassStatistics::new).add(pass);
+        }
+        if (other.classCounters == null) return;
+        enableClassCounters();
+        other.getClassCounters().forEach((className, classCounter) -> classCounter.forEach((name, value) ->
+                classCounters.computeIfAbsent(className, key -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(name, key -> new LongAdder())
+                        .add(value)));
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"counters\": {");
+        appendJson(json, getCounters(), "    ");
+        json.append("\n  },\n  \"passes\": [");
+        String separator = "\n";
+        for (PassStatistics pass : getPasses()) {
+            // Disabled phases of Soot are registered as well
+            if (pass.getInvocations() == 0) continue;
+            json.append(separator).append("    {\"name\": \"").append(pass.getName())
+                    .append("\", \"invocations\": ").append(pass.getInvocations())
+                    .append(", \"wallNanos\": ").append(pass.getWallNanos())
+                    .append(", \"allocatedBytes\": ").append(pass.getAllocatedBytes()).append('}');
+            separator = ",\n";
+        }
+        json.append("\n  ]");
+        if (classCounters != null) {
+            json.append(",\n  \"classes\": {");
+            separator = "\n";
+            for (Map.Entry<String, Map<String, Long>> classCounter : getClassCounters().entrySet()) {
+                json.append(separator).append("    \"").append(classCounter.getKey()).append("\": {");
+                appendJson(json, classCounter.getValue(), "      ");
+                json.append("\n    }");
+                separator = ",\n";
+            }
+            json.append("\n  }");
+        }
+        return json.append("\n}\n").toString();
+    }
+
+    private static void appendJson(StringBuilder json, Map<String, Long> counters, String indent) {
+        String separator = "\n";
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            json.append(separator).append(indent).append('"').append(counter.getKey()).append("\": ").append(counter.getValue());
+            separator = ",\n";
+        }
+    }
+
+    /**
+     * One row per counter with its class, the class is empty for the counters of the whole run. The rows of the
+     * classes follow, if the counters are kept per class. The passes are only part of the JSON.
+     */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder("class,counter,count\n");
+        getCounters().forEach((name, value) -> csv.append(',').append(name).append(',').append(value).append('\n'));
+        getClassCounters().forEach((className, classCounter) -> classCounter.forEach((name, value) ->
+                csv.append(className).append(',').append(name).append(',').append(value).append('\n')));
+        return csv.toString();
+    }
+
+    public void writeJson(Path file) throws IOException {
+        Files.write(file, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        Files.write(file, toCsv().getBytes(StandardCharsets.UTF_8));
+    }
 
     @Override
     public String toString() {
@@ -48,6 +311,21 @@ public class NormalizationStatistics {
                 ", typecheck=" + typecheck +
                 ", amountOfClasses=" + amountOfClasses +
                 ", amountOfMethods=" + amountOfMethods +
+                ", amountOfCachedClasses=" + amountOfCachedClasses +
+                ", skippedArithmetic=" + skippedArithmetic +
+                ", skippedStringConcat=" + skippedStringConcat +
+                ", skippedPrivateMethodCalls=" + skippedPrivateMethodCalls +
+                ", skippedCharSequenceToString=" + skippedCharSequenceToString +
+                ", skippedBufferMethodCalls=" + skippedBufferMethodCalls +
+                ", skippedNullChecks=" + skippedNullChecks +
+                ", skippedDuplicateTypeCast=" + skippedDuplicateTypeCast +
+                ", skippedEnum=" + skippedEnum +
+                ", skippedRedundantTraps=" + skippedRedundantTraps +
+                ", skippedTraps=" + skippedTraps +
+                ", skippedInnerClassInits=" + skippedInnerClassInits +
+                ", skippedNestBasedPrivateAccesses=" + skippedNestBasedPrivateAccesses +
+                ", skippedDynamicStringConcatCasts=" + skippedDynamicStringConcatCasts +
+                ", skippedDynamicStringConstantConcat=" + skippedDynamicStringConstantConcat +
                 '}';
     }
 }
@@ -0,0 +1,67 @@
+package jnorm.core.model;
+
+import jnorm.core.helpers.ThreadAllocation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class PassStatistics {
+    String name;
+    // Striped, as passes of bodies run on multiple threads
+    final LongAdder invocations = new LongAdder();
+    // Summed over all threads, so passes that run in parallel may exceed the wall time of the run
+    final LongAdder wallNanos = new LongAdder();
+    // Allocated by the thread that ran the pass, only measured if the JVM supports it
+    final LongAdder allocatedBytes = new LongAdder();
+
+    public PassStatistics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records an invocation on the current thread that started at the given {@link System#nanoTime()} and
+     * {@link ThreadAllocation#allocatedBytes()}.
+     */
+    public void record(long startNanos, long startAllocatedBytes) {
+        wallNanos.add(System.nanoTime() - startNanos);
+        if (ThreadAllocation.isSupported()) allocatedBytes.add(ThreadAllocation.allocatedBytes() - startAllocatedBytes);
+        invocations.increment();
+    }
+
+    /**
+     * Adds the invocations of the other statistics of the pass, for example of another run.
+     */
+    public void add(PassStatistics other) {
+        invocations.add(other.invocations.sum());
+        wallNanos.add(other.wallNanos.sum());
+        allocatedBytes.add(other.allocatedBytes.sum());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    public long getWallNanos() {
+        return wallNanos.sum();
+    }
+
+    /**
+     * @return the allocated bytes, -1 if the JVM does not measure allocations
+     */
+    public long getAllocatedBytes() {
+        return ThreadAllocation.isSupported() ? allocatedBytes.sum() : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "PassStatistics{" +
+                "name='" + name + '\'' +
+                ", invocations=" + invocations +
+                ", wallNanos=" + wallNanos +
+                ", allocatedBytes=" + getAllocatedBytes() +
+                '}';
+    }
+}
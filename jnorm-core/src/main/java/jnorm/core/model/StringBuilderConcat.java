@@ -5,25 +5,31 @@ import soot.Type;
 import soot.Unit;
 import soot.Value;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 public class StringBuilderConcat {
-    String template = "";
+    // Position among the concats of a body, earlier concats take precedence for shared aliases
+    int index;
+    StringBuilder template = new StringBuilder();
     List<Unit> stringBuilderCalls = new ArrayList<>();
-    List<Local> aliases = new ArrayList<>();
+    Set<Local> aliases = Collections.newSetFromMap(new IdentityHashMap<>());
     List<Value> dynamicValues = new ArrayList<>();
     List<Type> dynamicTypes = new ArrayList<>();
     Unit endUnit;
     Unit newStringConcatCall;
 
     public StringBuilderConcat(Local alias, Unit call) {
+        this(alias, call, 0);
+    }
+
+    public StringBuilderConcat(Local alias, Unit call, int index) {
+        this.index = index;
         aliases.add(alias);
         stringBuilderCalls.add(call);
     }
 
     public void concat(String concatString) {
-        template += concatString;
+        template.append(concatString);
     }
 
     public boolean aliasContained(Local alias) {
@@ -51,8 +57,12 @@ public class StringBuilderConcat {
         this.newStringConcatCall = newStringConcatCall;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     public String getTemplate() {
-        return template;
+        return template.toString();
     }
 
     public List<Unit> getStringBuilderCalls() {
@@ -0,0 +1,198 @@
+package jnorm.core.helpers;
+
+import jdk.jfr.*;
+
+/**
+ * Emits Java Flight Recorder events for the phases and passes of a normalization. Events are only created while the
+ * Flight Recorder is initialized and the event type is enabled, so the phases stay as cheap as without events otherwise.
+ * <p>
+ * Every begin method returns the started event or null if it is not recorded, so callers only compute the fields of
+ * recorded events.
+ */
+public class NormalizationEvents {
+    private NormalizationEvents() {
+    }
+
+    public static boolean isSupported() {
+        return true;
+    }
+
+    public static Object beginSceneLoad() {
+        return begin(FlightRecorder.isInitialized() ? new SceneLoadEvent() : null);
+    }
+
+    public static void commitSceneLoad(Object event, int applicationClasses) {
+        SceneLoadEvent sceneLoadEvent = (SceneLoadEvent) event;
+        sceneLoadEvent.end();
+        if (!sceneLoadEvent.shouldCommit()) return;
+        sceneLoadEvent.applicationClasses = applicationClasses;
+        sceneLoadEvent.commit();
+    }
+
+    public static Object beginPacks() {
+        return begin(FlightRecorder.isInitialized() ? new PacksEvent() : null);
+    }
+
+    public static void commitPacks(Object event, int applicationClasses) {
+        PacksEvent packsEvent = (PacksEvent) event;
+        packsEvent.end();
+        if (!packsEvent.shouldCommit()) return;
+        packsEvent.applicationClasses = applicationClasses;
+        packsEvent.commit();
+    }
+
+    public static Object beginTransform() {
+        return begin(FlightRecorder.isInitialized() ? new TransformEvent() : null);
+    }
+
+    public static void commitTransform(Object event, String phase, String method) {
+        TransformEvent transformEvent = (TransformEvent) event;
+        transformEvent.end();
+        if (!transformEvent.shouldCommit()) return;
+        transformEvent.pack = phase.substring(0, phase.indexOf('.') < 0 ? phase.length() : phase.indexOf('.'));
+        transformEvent.phase = phase;
+        transformEvent.method = method;
+        transformEvent.commit();
+    }
+
+    public static Object beginPass() {
+        return begin(FlightRecorder.isInitialized() ? new PassEvent() : null);
+    }
+
+    public static void commitPass(Object event, String pass, String method, int hits) {
+        PassEvent passEvent = (PassEvent) event;
+        passEvent.end();
+        if (!passEvent.shouldCommit()) return;
+        passEvent.pass = pass;
+        passEvent.method = method;
+        passEvent.hits = hits;
+        passEvent.commit();
+    }
+
+    public static Object beginPrint() {
+        return begin(FlightRecorder.isInitialized() ? new PrintEvent() : null);
+    }
+
+    public static void commitPrint(Object event, String className, int characters) {
+        PrintEvent printEvent = (PrintEvent) event;
+        printEvent.end();
+        if (!printEvent.shouldCommit()) return;
+        printEvent.className = className;
+        printEvent.characters = characters;
+        printEvent.commit();
+    }
+
+    public static Object beginPostProcess() {
+        return begin(FlightRecorder.isInitialized() ? new PostProcessEvent() : null);
+    }
+
+    public static void commitPostProcess(Object event, String className) {
+        PostProcessEvent postProcessEvent = (PostProcessEvent) event;
+        postProcessEvent.end();
+        if (!postProcessEvent.shouldCommit()) return;
+        postProcessEvent.className = className;
+        postProcessEvent.commit();
+    }
+
+    public static Object beginWrite() {
+        return begin(FlightRecorder.isInitialized() ? new WriteEvent() : null);
+    }
+
+    public static void commitWrite(Object event, String path, int bytes, boolean written) {
+        WriteEvent writeEvent = (WriteEvent) event;
+        writeEvent.end();
+        if (!writeEvent.shouldCommit()) return;
+        writeEvent.path = path;
+        writeEvent.bytes = bytes;
+        writeEvent.written = written;
+        writeEvent.commit();
+    }
+
+    private static Object begin(Event event) {
+        if (event == null || !event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    @Name("jnorm.SceneLoad")
+    @Label("Scene Load")
+    @Category("jNorm")
+    @Description("Soot loads the input and the classes it depends on")
+    static class SceneLoadEvent extends Event {
+        @Label("Application Classes")
+        int applicationClasses;
+    }
+
+    @Name("jnorm.Packs")
+    @Label("Packs")
+    @Category("jNorm")
+    @Description("Soot runs the packs over all bodies of the application classes")
+    static class PacksEvent extends Event {
+        @Label("Application Classes")
+        int applicationClasses;
+    }
+
+    @Name("jnorm.Transform")
+    @Label("Body Transform")
+    @Category("jNorm")
+    @StackTrace(false)
+    @Description("A transform of a pack, including the renaming of jap.rename, runs on a body")
+    static class TransformEvent extends Event {
+        @Label("Pack")
+        String pack;
+        @Label("Phase")
+        String phase;
+        @Label("Method")
+        String method;
+    }
+
+    @Name("jnorm.Pass")
+    @Label("Normalization Pass")
+    @Category("jNorm")
+    @StackTrace(false)
+    @Description("A pass of the core body normalizer runs on a body")
+    static class PassEvent extends Event {
+        @Label("Pass")
+        String pass;
+        @Label("Method")
+        String method;
+        @Label("Hits")
+        @Description("Normalizations the pass applied to the body")
+        int hits;
+    }
+
+    @Name("jnorm.Print")
+    @Label("Print")
+    @Category("jNorm")
+    @Description("A class is printed as Jimple")
+    static class PrintEvent extends Event {
+        @Label("Class")
+        String className;
+        @Label("Characters")
+        int characters;
+    }
+
+    @Name("jnorm.PostProcess")
+    @Label("Post-Process")
+    @Category("jNorm")
+    @Description("The printed Jimple of a class is pretty-printed and renamed")
+    static class PostProcessEvent extends Event {
+        @Label("Class")
+        String className;
+    }
+
+    @Name("jnorm.Write")
+    @Label("Write")
+    @Category("jNorm")
+    @Description("An output file is written")
+    static class WriteEvent extends Event {
+        @Label("Path")
+        String path;
+        @Label("Bytes")
+        @DataAmount
+        int bytes;
+        @Label("Written")
+        @Description("False if the file was unchanged and not written")
+        boolean written;
+    }
+}
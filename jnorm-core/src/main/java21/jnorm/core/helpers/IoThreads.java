@@ -0,0 +1,20 @@
+package jnorm.core.helpers;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads of the {@link AsyncWriter} as virtual threads, which do not hold a platform thread while they
+ * wait for the queue.
+ */
+public class IoThreads {
+    private IoThreads() {
+    }
+
+    public static ThreadFactory newThreadFactory(String name) {
+        return Thread.ofVirtual().name(name + "-", 1).factory();
+    }
+
+    public static boolean isVirtual() {
+        return true;
+    }
+}